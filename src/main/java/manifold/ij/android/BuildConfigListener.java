@@ -0,0 +1,102 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.android;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import manifold.ij.util.ReparseUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. When Gradle sync regenerates an Android BuildConfig file, updates the module's cached
+ * BuildConfig symbols and reparses the files referencing the symbols that changed.
+ */
+public class BuildConfigListener implements BulkFileListener
+{
+  private final Project _project;
+
+  public BuildConfigListener( Project project )
+  {
+    _project = project;
+  }
+
+  @Override
+  public void after( @NotNull List<? extends VFileEvent> events )
+  {
+    if( _project.isDisposed() )
+    {
+      return;
+    }
+
+    // capture the symbols cached before the change now, by the time the deferred task runs the lexer may have loaded
+    // the new ones, leaving nothing to compare
+    Map<Module, Map<String, String>> oldSymbols = new LinkedHashMap<>();
+    for( VFileEvent event: events )
+    {
+      VirtualFile file = event.getFile();
+      if( file != null &&
+        (event instanceof VFileContentChangeEvent || event instanceof VFileCreateEvent) &&
+        BuildVariantSymbols.isBuildConfig( file ) )
+      {
+        Module ijModule = ModuleUtilCore.findModuleForFile( file, _project );
+        if( ijModule != null )
+        {
+          oldSymbols.putIfAbsent( ijModule, BuildVariantSymbols.getCachedBuildConfigSymbols( ijModule ) );
+        }
+      }
+    }
+
+    if( !oldSymbols.isEmpty() )
+    {
+      ApplicationManager.getApplication().invokeLater( () ->
+        ApplicationManager.getApplication().runReadAction( () -> buildConfigsChanged( oldSymbols ) ) );
+    }
+  }
+
+  private void buildConfigsChanged( Map<Module, Map<String, String>> oldSymbols )
+  {
+    if( _project.isDisposed() )
+    {
+      return;
+    }
+
+    oldSymbols.forEach( ( ijModule, symbols ) -> {
+      if( ijModule.isDisposed() )
+      {
+        return;
+      }
+
+      Map<String, String> newSymbols = BuildVariantSymbols.getBuildConfigSymbols( ijModule );
+      Set<String> changed = ReparseUtil.findChangedSymbols( symbols, newSymbols );
+      ReparseUtil.instance().reparseFilesUsingSymbols( _project, changed );
+    } );
+  }
+}
@@ -19,36 +19,36 @@
 
 package manifold.ij.android;
 
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileVisitor;
 import manifold.api.fs.IFile;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
 import manifold.ij.extensions.ManDefinitions;
 import manifold.preprocessor.api.SymbolProvider;
 import manifold.preprocessor.definitions.Definitions;
-import manifold.rt.api.util.StreamUtil;
 
-import java.io.File;
-import java.io.FileReader;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class BuildVariantSymbols implements SymbolProvider
 {
   public static BuildVariantSymbols INSTANCE = null;
 
-  private Map<ManModule, Map<String, String>> _buildConfigSyms;
+  static final String BUILD_CONFIG_FILE = "BuildConfig.java";
+  private static final String BUILD_CONFIG_SOURCE_PATH = "/app/build/generated/source/buildConfig/";
+  private static final Key<CachedBuildConfig> KEY_BUILD_CONFIG = Key.create( "manifold.BuildConfig" );
 
   public BuildVariantSymbols()
   {
     INSTANCE = this;
   }
 
-  public void reset()
-  {
-    _buildConfigSyms = null;
-  }
-
   @Override
   public boolean isDefined( Definitions rootDef, IFile sourceFile, String def )
   {
@@ -68,32 +68,74 @@ public class BuildVariantSymbols implements SymbolProvider
     {
       return Collections.emptyMap();
     }
+    return getBuildConfigSymbols( module.getIjModule() );
+  }
 
-    if( _buildConfigSyms == null )
+  /**
+   * The parsed BuildConfig symbols are cached on the module and keyed on the BuildConfig file's modification stamp, so
+   * the file is read and parsed only when Gradle regenerates it or when the build variant changes.
+   *
+   * @return The symbols defined in the module's generated BuildConfig class, or an empty map if there isn't one
+   */
+  public static Map<String, String> getBuildConfigSymbols( Module ijModule )
+  {
+    VirtualFile buildConfigSourceRoot = getBuildConfigSourceRoot( ijModule );
+    if( buildConfigSourceRoot == null )
     {
-      _buildConfigSyms = new ConcurrentHashMap<>();
+      return Collections.emptyMap();
     }
 
-    return _buildConfigSyms.computeIfAbsent( module, m -> {
-      String generatedClassesDir = getBuildConfigSourcePath( rootDef );
-      if( generatedClassesDir != null )
-      {
-        File dir = new File( generatedClassesDir );
-        File buildConfig = findBuildConfig( dir );
-        if( buildConfig != null )
-        {
-          return parseFields( buildConfig );
-        }
-      }
+    CachedBuildConfig cached = ijModule.getUserData( KEY_BUILD_CONFIG );
+    if( cached != null && cached.isValid( buildConfigSourceRoot ) )
+    {
+      return cached._symbols;
+    }
+
+    VirtualFile buildConfig = cached != null && cached._sourceRoot.equals( buildConfigSourceRoot ) && cached._file.isValid()
+      ? cached._file
+      : findBuildConfig( buildConfigSourceRoot );
+    if( buildConfig == null )
+    {
+      ijModule.putUserData( KEY_BUILD_CONFIG, null );
       return Collections.emptyMap();
-    } );
+    }
+
+    cached = new CachedBuildConfig( buildConfigSourceRoot, buildConfig );
+    ijModule.putUserData( KEY_BUILD_CONFIG, cached );
+    return cached._symbols;
+  }
+
+  /**
+   * @return The BuildConfig symbols cached for the module so far, without loading them
+   */
+  static Map<String, String> getCachedBuildConfigSymbols( Module ijModule )
+  {
+    CachedBuildConfig cached = ijModule.getUserData( KEY_BUILD_CONFIG );
+    return cached == null ? Collections.emptyMap() : cached._symbols;
+  }
+
+  /**
+   * @return The names of the BuildConfig symbols loaded so far, across all modules of the project
+   */
+  public static Set<String> getSymbolNames( Project project )
+  {
+    Set<String> names = new HashSet<>();
+    for( Module ijModule: ModuleManager.getInstance( project ).getModules() )
+    {
+      names.addAll( getCachedBuildConfigSymbols( ijModule ).keySet() );
+    }
+    return names;
   }
 
-  private Map<String, String> parseFields( File buildConfig )
+  static boolean isBuildConfig( VirtualFile file )
+  {
+    return file.getName().equals( BUILD_CONFIG_FILE ) && file.getPath().contains( BUILD_CONFIG_SOURCE_PATH );
+  }
+
+  static Map<String, String> parseFields( CharSequence text )
   {
     Map<String, String> map = new HashMap<>();
-    FileReader fileReader = new FileReader( buildConfig );
-    String content = StreamUtil.getContent( fileReader );
+    String content = text.toString();
     String p_s_f = "public static final";
     for( int psf = content.indexOf( p_s_f ); psf > 0; psf = content.indexOf( p_s_f, psf + p_s_f.length() ) )
     {
@@ -142,7 +184,7 @@ public class BuildVariantSymbols implements SymbolProvider
     return map;
   }
 
-  private String getVarName( String content, int iEq )
+  private static String getVarName( String content, int iEq )
   {
     StringBuilder sb = new StringBuilder();
     for( int i = iEq-1; i > 0; i-- )
@@ -160,7 +202,7 @@ public class BuildVariantSymbols implements SymbolProvider
     return sb.toString();
   }
 
-  private String getInitializer( String content, int iEq )
+  private static String getInitializer( String content, int iEq )
   {
     int i = iEq + 1;
     char c = content.charAt( i );
@@ -286,50 +328,59 @@ public class BuildVariantSymbols implements SymbolProvider
 //    }
 //  }
 
-  private String getBuildConfigSourcePath( Definitions rootDef )
+  private static VirtualFile getBuildConfigSourceRoot( Module ijModule )
   {
-    ManDefinitions manDefs = (ManDefinitions)rootDef;
-    ManModule module = manDefs.getModule();
-
-    String generatedClassesDir = null;
-    for( VirtualFile vf: ManProject.getSourceRoots( module.getIjModule() ) )
+    for( VirtualFile vf: ManProject.getSourceRoots( ijModule ) )
     {
-      String path = vf.getPath();
-      if( path.contains( "/app/build/generated/source/buildConfig/" ) )
+      if( vf.getPath().contains( BUILD_CONFIG_SOURCE_PATH ) )
       {
-        generatedClassesDir = path.replace( '/', File.separatorChar );
-        break;
+        return vf;
       }
     }
-    return generatedClassesDir;
+    return null;
   }
 
-  private File findBuildConfig( File file )
+  private static VirtualFile findBuildConfig( VirtualFile sourceRoot )
   {
-    if( file.isFile() )
+    VirtualFile[] buildConfig = {null};
+    VfsUtilCore.visitChildrenRecursively( sourceRoot, new VirtualFileVisitor<Void>()
     {
-      if( file.getName().equals( "BuildConfig.java" ) )
+      @Override
+      public boolean visitFile( VirtualFile file )
       {
-        return file;
-      }
-      return null;
-    }
-    else
-    {
-      File[] listing = file.listFiles();
-      if( listing != null )
-      {
-        for( File f : listing )
+        if( buildConfig[0] != null )
         {
-          File buildConfig = findBuildConfig( f );
-          if( buildConfig != null )
-          {
-            return buildConfig;
-          }
+          return false;
         }
+        if( !file.isDirectory() && file.getName().equals( BUILD_CONFIG_FILE ) )
+        {
+          buildConfig[0] = file;
+        }
+        return true;
       }
+    } );
+    return buildConfig[0];
+  }
+
+  private static class CachedBuildConfig
+  {
+    private final VirtualFile _sourceRoot;
+    private final VirtualFile _file;
+    private final long _stamp;
+    private final Map<String, String> _symbols;
+
+    CachedBuildConfig( VirtualFile sourceRoot, VirtualFile file )
+    {
+      _sourceRoot = sourceRoot;
+      _file = file;
+      _stamp = file.getModificationStamp();
+      _symbols = parseFields( LoadTextUtil.loadText( file ) );
+    }
+
+    boolean isValid( VirtualFile sourceRoot )
+    {
+      return _sourceRoot.equals( sourceRoot ) && _file.isValid() && _stamp == _file.getModificationStamp();
     }
-    return null;
   }
 
   //  private Map<String, String> loadBuildConfigSymbols( Definitions rootDef )
@@ -34,6 +34,7 @@ import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.FileContentUtilCore;
+import manifold.ij.util.ReparseUtil;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -72,6 +73,7 @@ public class ManPreprocessorDocumentListener implements DocumentListener
     {
       if( _reparse || definitionChanged( event ) )
       {
+        ReparseUtil.instance().definitionsChanged();
         ApplicationManager.getApplication().invokeLater( () -> {
           PsiDocumentManager.getInstance( _project ).commitDocument( event.getDocument() );
           ApplicationManager.getApplication().runReadAction( () -> {
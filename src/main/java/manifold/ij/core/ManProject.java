@@ -27,6 +27,8 @@ import com.intellij.compiler.CompilerConfiguration;
 import com.intellij.compiler.impl.javaCompiler.javac.JavacConfiguration;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.compiler.CompilerPaths;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.fileEditor.*;
@@ -45,6 +47,7 @@ import com.intellij.openapi.roots.OrderEntry;
 import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.PsiElement;
@@ -53,6 +56,7 @@ import com.intellij.psi.PsiManager;
 import com.intellij.psi.impl.PsiDocumentTransactionListener;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.PlatformUtils;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.messages.MessageBusConnection;
 import java.io.File;
 import java.net.MalformedURLException;
@@ -67,6 +71,7 @@ import manifold.api.fs.IFileUtil;
 import manifold.api.fs.jar.JarFileDirectoryImpl;
 import manifold.api.host.Dependency;
 import manifold.api.host.IModule;
+import manifold.ij.android.BuildConfigListener;
 import manifold.ij.android.BuildVariantSymbols;
 import manifold.ij.extensions.*;
 import manifold.ij.fs.IjFile;
@@ -105,6 +110,7 @@ public class ManProject
   private ManifoldPsiClassCache _psiClassCache;
   private LocklessLazyVar<Set<ManModule>> _rootModules;
   private boolean _hasNamedModule;
+  private volatile Map<Module, ModuleRoots> _moduleRoots;
 
   @SuppressWarnings("unused")
   public static Collection<ManProject> getAllProjects()
@@ -406,6 +412,12 @@ public class ManProject
         {
           init();
 
+          // the JDK, module-info, build variant, etc. may have changed, preprocessor output cached for files may be stale
+          ReparseUtil.instance().definitionsChanged();
+
+          // the type manifolds may have changed
+          updateAnnotatorRegistration();
+
           reparseOpenFilesForPreprocessor();
 
           getFileModificationManager().getManRefresher().nukeFromOrbit();
@@ -413,15 +425,80 @@ public class ManProject
       } );
   }
 
+  /**
+   * Handles a change to the project's roots e.g., a jar added to a module. Instead of a full {@link #reset()}, only the
+   * modules whose roots or dependencies changed and the modules depending on them are rebuilt. The other modules keep
+   * their type manifolds and cached classes. Like {@code reset()} the modules are rebuilt lazily, on next use, but the
+   * side effects of the change, such as dropping cached classes of the affected modules, happen here.
+   */
+  public void rootsChanged()
+  {
+    ApplicationManager.getApplication().runReadAction(
+      () -> {
+        if( _modules == null || !_modules.isLoaded() || _moduleRoots == null ||
+          isManifoldInUse() != ManLibraryChecker.instance().isUsingManifoldJars( _ijProject ) )
+        {
+          // manifold is not in use, or it is added or removed, or the modules are not defined yet
+          reset();
+          return;
+        }
+
+        Map<Module, ManModule> previous = _modules.get();
+        Module[] allIjModules = ModuleManager.getInstance( _ijProject ).getModules();
+        Map<Module, ModuleRoots> roots = snapshotModuleRoots( allIjModules );
+        if( !roots.keySet().equals( previous.keySet() ) )
+        {
+          // modules added or removed, define them all
+          getFileModificationManager().getManRefresher().nukeFromOrbit();
+          _modules = LockingLazyVar.make( () -> ApplicationManager.getApplication().<Map<Module, ManModule>>runReadAction( this::defineModules ) );
+        }
+        else
+        {
+          Set<Module> affected = findAffectedModules( allIjModules, _moduleRoots, roots );
+          if( !affected.isEmpty() )
+          {
+            _modules = LockingLazyVar.make( () -> ApplicationManager.getApplication().<Map<Module, ManModule>>runReadAction(
+              () -> rebuildModules( previous, affected ) ) );
+            _psiClassCache.modulesRefreshed( affected );
+          }
+        }
+        _moduleRoots = roots;
+        _rootModules = assignRootModuleLazy();
+        // a module-info.java may have been added or removed with a source root
+        _hasNamedModule = Arrays.stream( allIjModules ).anyMatch( this::isNamedModule );
+        addCompilerArgs();
+
+        // the JDK or a dependency providing symbols may have changed
+        ReparseUtil.instance().definitionsChanged();
+
+        updateAnnotatorRegistration();
+
+        reparseOpenFilesForPreprocessor();
+      } );
+  }
+
+  private void updateAnnotatorRegistration()
+  {
+    // off the calling thread, finding the languages defines the modules
+    AppExecutorUtil.getAppExecutorService().execute( () -> {
+      if( !_ijProject.isDisposed() )
+      {
+        ManifoldPsiClassAnnotator.updateRegistration();
+      }
+    } );
+  }
+
   private void reparseOpenFilesForPreprocessor()
   {
     if( BuildVariantSymbols.INSTANCE != null ) // this means preprocessor is used and symbol providers were accessed
     {
+      Set<String> buildConfigSymbols = BuildVariantSymbols.getSymbolNames( getNativeProject() );
+
       // Force symbol providers to reload in order to handle a build variant change
       ServiceDefinitions.REGISTERED_SYMBOL_PROVIDERS.clear();
 
-      // retokenize open files in case the build variant changed
-      ReparseUtil.instance().reparseRecentJavaFiles( getNativeProject() );
+      // retokenize files using BuildConfig symbols in case the build variant changed
+      ReparseUtil.instance().reparseFilesUsingSymbols( getNativeProject(), buildConfigSymbols );
     }
   }
 
@@ -455,6 +532,7 @@ public class ManProject
     addModuleClasspathListener();
     addFileOpenedListener();
     addBuildPropertiesFilePersistenceListener();
+    addBuildConfigListener();
 
     EditorFactory.getInstance().getEventMulticaster().addDocumentListener(
       new ManPreprocessorDocumentListener( _ijProject ), _ijProject );
@@ -656,6 +734,12 @@ public class ManProject
       new ReparseFileTrigger( _ijProject ) );
   }
 
+  private void addBuildConfigListener()
+  {
+    _permanentProjectConnection.subscribe( VirtualFileManager.VFS_CHANGES,
+      new BuildConfigListener( _ijProject ) );
+  }
+
   private void addModuleClasspathListener()
   {
     _permanentProjectConnection.subscribe( ProjectTopics.PROJECT_ROOTS,
@@ -667,6 +751,8 @@ public class ManProject
    * If a file has any #if directive force it to fully reparse when opened. This to handle the case where the environment
    * changed i.e., Java version changed, or Android build variant changed, etc. Note, this is necessary because IJ caches
    * tokenization and does not retokenize when opening a file that has been opened before.
+   * <p/>
+   * The check runs in a background read action so that opening a file never scans its text on the EDT.
    */
   private void addFileOpenedListener()
   {
@@ -681,27 +767,51 @@ public class ManProject
             return;
           }
 
-          PsiFile psiFile = PsiManager.getInstance( source.getProject() ).findFile( file );
-          if( psiFile != null && psiFile.getLanguage() == JavaLanguage.INSTANCE )
-          {
-            ManModule module = ManProject.getModule( psiFile );
-            if( module == null || !module.isPreprocessorEnabled() )
-            {
-              // preprocessor is not used in the file's module
-              return;
-            }
-
-            if( psiFile.getText().contains( "#endif" ) )
-            {
-              // force retokenziation of files with #if in case the environment or other conditions have changed
-              // while the file was closed (IJ caches tokenization and won't retokenize unless forced)
-              ReparseUtil.instance().reparseFile( psiFile.getProject(), file );
-            }
-          }
+          Project project = source.getProject();
+          ReadAction.nonBlocking( () -> hasPreprocessorConditionals( project, file ) )
+            .expireWith( project )
+            .finishOnUiThread( ModalityState.defaultModalityState(), hasConditionals -> {
+              if( hasConditionals )
+              {
+                // force retokenziation of files with #if in case the environment or other conditions have changed
+                // while the file was closed (IJ caches tokenization and won't retokenize unless forced)
+                ReparseUtil.instance().reparseFile( project, file );
+              }
+            } )
+            .submit( AppExecutorUtil.getAppExecutorService() );
         }
       } );
   }
 
+  private static boolean hasPreprocessorConditionals( Project project, VirtualFile file )
+  {
+    if( project.isDisposed() || !file.isValid() )
+    {
+      return false;
+    }
+
+    PsiFile psiFile = PsiManager.getInstance( project ).findFile( file );
+    if( psiFile == null || psiFile.getLanguage() != JavaLanguage.INSTANCE )
+    {
+      return false;
+    }
+
+    ManModule module = ManProject.getModule( psiFile );
+    if( module == null || !module.isPreprocessorEnabled() )
+    {
+      // preprocessor is not used in the file's module
+      return false;
+    }
+
+    if( !ManPreprocessorDirectiveIndex.mayHaveDirectives( psiFile ) )
+    {
+      return false;
+    }
+
+    // search the file's contents directly, psiFile.getText() would materialize the full text
+    return StringUtil.contains( psiFile.getViewProvider().getContents(), "#endif" );
+  }
+
   void projectClosed()
   {
     _projectConnection.disconnect();
@@ -747,6 +857,7 @@ public class ManProject
   {
     ModuleManager moduleManager = ModuleManager.getInstance( _ijProject );
     Module[] allIjModules = moduleManager.getModules();
+    _moduleRoots = snapshotModuleRoots( allIjModules );
 
     // create modules
     Map<Module, ManModule> modules = new HashMap<>();
@@ -783,6 +894,88 @@ public class ManProject
     return allModules;
   }
 
+  /**
+   * @return The modules having changed roots or dependencies in {@code roots}, along with the modules depending on them,
+   * directly or indirectly
+   */
+  private static Set<Module> findAffectedModules( Module[] allIjModules, Map<Module, ModuleRoots> previousRoots,
+                                                  Map<Module, ModuleRoots> roots )
+  {
+    Set<Module> affected = new HashSet<>();
+    roots.forEach( ( ijModule, moduleRoots ) -> {
+      if( !moduleRoots.equals( previousRoots.get( ijModule ) ) )
+      {
+        affected.add( ijModule );
+      }
+    } );
+    addDependents( allIjModules, affected );
+    return affected;
+  }
+
+  /**
+   * Rebuilds the {@code affected} modules of {@code previous}. Since no remaining module depends on a rebuilt module,
+   * the remaining modules and their caches are unaffected.
+   */
+  private Map<Module, ManModule> rebuildModules( Map<Module, ManModule> previous, Set<Module> affected )
+  {
+    Map<Module, ManModule> modules = new LinkedHashMap<>( previous );
+    List<ManModule> rebuilt = new ArrayList<>();
+    for( Module ijModule: affected )
+    {
+      ManModule module = defineModule( ijModule );
+      modules.put( ijModule, module );
+      rebuilt.add( module );
+    }
+
+    for( ManModule manModule: rebuilt )
+    {
+      addModuleDependencies( modules, manModule );
+    }
+
+    // the remaining modules are already reduced
+    Set<ManModule> visited = new HashSet<>( modules.values() );
+    rebuilt.forEach( visited::remove );
+    for( ManModule manModule: rebuilt )
+    {
+      manModule.reduceClasspath( visited );
+    }
+
+    for( ManModule manModule: rebuilt )
+    {
+      manModule.initializeTypeManifolds();
+    }
+
+    return modules;
+  }
+
+  private static void addDependents( Module[] allIjModules, Set<Module> affected )
+  {
+    boolean added;
+    do
+    {
+      added = false;
+      for( Module ijModule: allIjModules )
+      {
+        if( !affected.contains( ijModule ) &&
+          Arrays.stream( ModuleRootManager.getInstance( ijModule ).getDependencies() ).anyMatch( affected::contains ) )
+        {
+          affected.add( ijModule );
+          added = true;
+        }
+      }
+    } while( added );
+  }
+
+  private Map<Module, ModuleRoots> snapshotModuleRoots( Module[] allIjModules )
+  {
+    Map<Module, ModuleRoots> roots = new HashMap<>();
+    for( Module ijModule: allIjModules )
+    {
+      roots.put( ijModule, new ModuleRoots( ijModule ) );
+    }
+    return roots;
+  }
+
   private void addModuleDependencies( Map<Module, ManModule> modules, ManModule manModule )
   {
     Module ijModule = manModule.getIjModule();
@@ -1051,4 +1244,56 @@ public class ManProject
   {
     return _psiClassCache;
   }
+
+  /**
+   * The parts of a module's root model a {@link ManModule} is built from
+   */
+  private class ModuleRoots
+  {
+    private final List<String> _classpath;
+    private final List<String> _sourceRoots;
+    private final List<String> _excludedRoots;
+    private final String _outputPath;
+    private final String _processorPath;
+    private final List<String> _dependencies;
+
+    ModuleRoots( Module ijModule )
+    {
+      _classpath = getDirectClassPaths( ijModule );
+      _sourceRoots = getSourceRoots( ijModule ).stream().map( VirtualFile::getUrl ).collect( Collectors.toList() );
+      _excludedRoots = getExcludedRoots( ijModule ).stream().map( VirtualFile::getUrl ).collect( Collectors.toList() );
+      VirtualFile outputPath = CompilerPaths.getModuleOutputDirectory( ijModule, false );
+      _outputPath = outputPath == null ? null : outputPath.getUrl();
+      _processorPath = CompilerConfiguration.getInstance( _ijProject ).getAnnotationProcessingConfiguration( ijModule ).getProcessorPath();
+      _dependencies = Arrays.stream( ModuleRootManager.getInstance( ijModule ).getDependencies() )
+        .map( child -> child.getName() + (isExported( ijModule, child ) ? "+" : "") )
+        .collect( Collectors.toList() );
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if( this == o )
+      {
+        return true;
+      }
+      if( !(o instanceof ModuleRoots) )
+      {
+        return false;
+      }
+      ModuleRoots that = (ModuleRoots)o;
+      return _classpath.equals( that._classpath ) &&
+        _sourceRoots.equals( that._sourceRoots ) &&
+        _excludedRoots.equals( that._excludedRoots ) &&
+        Objects.equals( _outputPath, that._outputPath ) &&
+        _processorPath.equals( that._processorPath ) &&
+        _dependencies.equals( that._dependencies );
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash( _classpath, _sourceRoots, _excludedRoots, _outputPath, _processorPath, _dependencies );
+    }
+  }
 }
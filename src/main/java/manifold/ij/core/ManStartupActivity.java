@@ -20,8 +20,6 @@
 package manifold.ij.core;
 
 import com.intellij.codeInsight.highlighting.PairedBraceMatcherAdapter;
-import com.intellij.lang.Language;
-import com.intellij.lang.LanguageAnnotators;
 import com.intellij.lang.LanguageBraceMatching;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
@@ -44,6 +42,9 @@ public class ManStartupActivity implements com.intellij.openapi.startup.ProjectA
     initForAllProjects();
 
     ApplicationManager.getApplication().runReadAction( () -> ManProject.manProjectFrom( project ).projectOpened() );
+
+    // include the languages of resource files handled by this project's type manifolds
+    ManifoldPsiClassAnnotator.updateRegistration();
     return null;
   }
 
@@ -61,17 +62,14 @@ public class ManStartupActivity implements com.intellij.openapi.startup.ProjectA
         if( !Initialized )
         {
           Initialized = true;
-          registerAnnotatorWithAllLanguages();
+          registerExtensions();
         }
       }
     }
   }
 
-  private void registerAnnotatorWithAllLanguages()
+  private void registerExtensions()
   {
-    // effectively adds annotator to ALL languages
-    LanguageAnnotators.INSTANCE.addExplicitExtension( Language.ANY, new ManifoldPsiClassAnnotator() );
-
     // add brace matcher to templates
     LanguageBraceMatching.INSTANCE.addExplicitExtension( ManTemplateLanguage.INSTANCE,
       new PairedBraceMatcherAdapter( new ManTemplateBraceMatcher(), ManTemplateLanguage.INSTANCE ) );
@@ -22,56 +22,100 @@ package manifold.ij.core;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import manifold.ij.util.ReparseUtil;
 import manifold.preprocessor.definitions.Definitions;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * For preprocessor and dbconfig.  When a build.properties or *.dbconfig file is saved, open Java files reparse.
+ * For preprocessor and dbconfig.  When a build.properties file is saved, the Java files referencing the symbols that
+ * changed reparse, see {@link manifold.ij.extensions.ManPreprocessorSymbolIndex}. When a *.dbconfig file is saved,
+ * open Java files reparse.
  *
  * todo: make the conditions for reparsing, currently dbconfig and build.properties, pluggable.
  * todo: even better: if manifold IModel had concept of model dependencies, we could determine exactly the set of files
- *  that need to reparse instead of reparsing everything. We could also reparse non-open files, because we need to if the
- *  file was opened then closed because IJ does not retokenize when reopening a file.
+ *  that need to reparse for dbconfig changes too.
  */
 class ReparseFileTrigger implements FileDocumentManagerListener
 {
   private final Project _ijProject;
+  private final Map<VirtualFile, Map<String, String>> _buildProperties;
 
   ReparseFileTrigger( Project ijProject )
   {
     _ijProject = ijProject;
+    _buildProperties = new ConcurrentHashMap<>();
   }
 
   @Override
   public void beforeDocumentSaving( @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    maybeReparseOpenJavaFiles( document, true );
   }
 
   @Override
   public void fileContentReloaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    maybeReparseOpenJavaFiles( document, false );
   }
 
   @Override
   public void fileContentLoaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    maybeReparseOpenJavaFiles( document, false );
   }
 
-  private void maybeReparseOpenJavaFiles( @NotNull Document document )
+  private void maybeReparseOpenJavaFiles( @NotNull Document document, boolean saving )
   {
     if( shouldReparse( document ) )
     {
-      ReparseUtil.instance().reparseRecentJavaFiles( _ijProject );
+      VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
+      if( vfile != null && Definitions.BUILD_PROPERTIES.equalsIgnoreCase( vfile.getName() ) )
+      {
+        // reparse just the files referencing the symbols that changed
+        ReparseUtil.instance().reparseFilesUsingSymbols( _ijProject, findChangedSymbols( vfile, document, saving ) );
+      }
+      else
+      {
+        ReparseUtil.instance().reparseRecentJavaFiles( _ijProject );
+      }
+    }
+  }
+
+  private Set<String> findChangedSymbols( VirtualFile buildProperties, Document document, boolean saving )
+  {
+    Map<String, String> newDefinitions = loadDefinitions( document.getCharsSequence() );
+    Map<String, String> oldDefinitions = _buildProperties.put( buildProperties, newDefinitions );
+    if( oldDefinitions == null )
+    {
+      // before saving, the file still has the old content, otherwise we have nothing to compare with and all the
+      // symbols are considered changed
+      oldDefinitions = saving
+        ? loadDefinitions( LoadTextUtil.loadText( buildProperties ) )
+        : Collections.emptyMap();
+    }
+
+    return ReparseUtil.findChangedSymbols( oldDefinitions, newDefinitions );
+  }
+
+  private static Map<String, String> loadDefinitions( CharSequence text )
+  {
+    Properties properties = new Properties();
+    properties.load( new StringReader( text.toString() ) );
+    Map<String, String> definitions = new HashMap<>();
+    for( String name: properties.stringPropertyNames() )
+    {
+      definitions.put( name, properties.getProperty( name ) );
     }
+    return definitions;
   }
 
   private boolean shouldReparse( Document document )
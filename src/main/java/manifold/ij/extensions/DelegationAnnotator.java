@@ -20,16 +20,13 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
-import com.intellij.openapi.project.DumbService;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiExtensibleClass;
 import com.intellij.psi.util.PsiTypesUtil;
 import com.intellij.refactoring.util.RefactoringUtil;
 import manifold.ext.delegation.DelegationIssueMsg;
 import manifold.ij.core.ManModule;
-import manifold.ij.core.ManProject;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
@@ -37,24 +34,27 @@ import java.util.List;
 /**
  * Annotator for stuff not covered in DelegationExternalAnnotator. For example, `this` usage in @part classes.
  */
-public class DelegationAnnotator implements Annotator
+public class DelegationAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiThisExpression.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      // Manifold jars are not used in the project
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
-    if( DumbService.getInstance( element.getProject() ).isDumb() )
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
+    if( context.isDumb() )
     {
       // skip processing during index rebuild
       return;
     }
 
-    ManModule module = ManProject.getModule( element );
+    ManModule module = context.getModule();
 
     if( module != null && !module.isDelegationEnabled() )
     {
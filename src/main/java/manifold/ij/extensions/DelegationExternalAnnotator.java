@@ -37,7 +37,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Main delegation annotator for @link using DelegationMaker.checkDelegation(). External annotation required due to the
+ * Main delegation annotator for @link using DelegationMaker.getModel(). External annotation required due to the
  * nature of whole-class analysis.
  */
 public class DelegationExternalAnnotator extends ExternalAnnotator<PsiFile, DelegationExternalAnnotator.Info>
@@ -98,8 +98,9 @@ public class DelegationExternalAnnotator extends ExternalAnnotator<PsiFile, Dele
 
   private static void annotate( PsiExtensibleClass psiClass, Info info )
   {
-    DelegationMaker.checkDelegation( psiClass, info );
-    
+    // shares the model ManDelegationAugmentProvider uses, the class is not analyzed again here
+    info.getIssues().addAll( DelegationMaker.getModel( psiClass ).getIssueInfo().getIssues() );
+
     for( PsiClass innerClass: psiClass.getInnerClasses() )
     {
       if( innerClass instanceof PsiExtensibleClass )
@@ -23,11 +23,15 @@ import com.intellij.codeInsight.generation.GenerateMembersUtil;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.lang.jvm.annotation.*;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiExtensibleClass;
 import com.intellij.psi.infos.CandidateInfo;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.MethodSignatureUtil;
 import com.intellij.psi.util.PsiTypesUtil;
 import com.intellij.psi.util.TypeConversionUtil;
@@ -50,23 +54,24 @@ import static manifold.ext.delegation.DelegationIssueMsg.*;
 public class DelegationMaker
 {
   private static final ThreadLocal<Set<String>> _reenter = ThreadLocal.withInitial( () -> new HashSet<>() );
+  private static final Key<CachedValue<Model>> KEY_CACHED_DELEGATION_MODEL = Key.create( "KEY_CACHED_DELEGATION_MODEL" );
 
   private final DelegationExternalAnnotator.Info _issueInfo;
-  private final LinkedHashSet<PsiMember> _augFeatures;
+  private final LinkedHashSet<PsiMethod> _augFeatures;
   private final PsiExtensibleClass _psiClass;
   private final ClassInfo _classInfo;
 
-  static void checkDelegation( PsiExtensibleClass psiClass, DelegationExternalAnnotator.Info issueInfo )
-  {
-    new DelegationMaker( psiClass, issueInfo ).generateOrCheck();
-  }
-
-  static void generateMethods( PsiExtensibleClass psiClass, LinkedHashSet<PsiMember> augFeatures )
+  /**
+   * The delegation model of {@code psiClass}: the methods generated for its links and the issues found with them. The
+   * model is shared by {@link ManDelegationAugmentProvider} and {@link DelegationExternalAnnotator}, it is computed
+   * again only when the class, its supers, or its linked types change.
+   */
+  static Model getModel( PsiExtensibleClass psiClass )
   {
     String qname = psiClass.getQualifiedName();
     if( qname == null )
     {
-      return;
+      return Model.EMPTY;
     }
 
     if( _reenter.get().contains( qname ) )
@@ -74,35 +79,61 @@ public class DelegationMaker
 //      throw new IllegalStateException(
 //        "Unexpected reentrancy detected. This can cause problems, it is likely due to PsiClass#getMethods() being called " +
 //          "somewhere indirectly from DelegationMaker. getOwnMethods() must be called instead of getMethods()." );
-      return;
-    }
-    _reenter.get().add( qname );
-    try
-    {
-      new DelegationMaker( psiClass, augFeatures ).generateOrCheck();
-    }
-    finally
-    {
-      _reenter.get().remove( qname );
+      return Model.EMPTY;
     }
+
+    return CachedValuesManager.getCachedValue( psiClass, KEY_CACHED_DELEGATION_MODEL, () -> {
+      _reenter.get().add( qname );
+      try
+      {
+        DelegationMaker maker = new DelegationMaker( psiClass, new DelegationExternalAnnotator.Info(), new LinkedHashSet<>() );
+        maker.generateOrCheck();
+        return CachedValueProvider.Result.create(
+          new Model( new ArrayList<>( maker._augFeatures ), maker._issueInfo ), maker.getDependencies() );
+      }
+      finally
+      {
+        _reenter.get().remove( qname );
+      }
+    } );
   }
 
-  private DelegationMaker( PsiExtensibleClass psiClass, DelegationExternalAnnotator.Info issueInfo )
+  private DelegationMaker( PsiExtensibleClass psiClass, DelegationExternalAnnotator.Info issueInfo, LinkedHashSet<PsiMethod> augFeatures )
   {
-    this( psiClass, issueInfo, null );
+    _psiClass = psiClass;
+    _issueInfo = issueInfo;
+    _augFeatures = augFeatures;
+    _classInfo = new ClassInfo( psiClass );
   }
 
-  private DelegationMaker( PsiExtensibleClass psiClass, LinkedHashSet<PsiMember> augFeatures )
+  /**
+   * The model depends on the class, its supers, and the types of its links
+   */
+  private Object[] getDependencies()
   {
-    this( psiClass, null, augFeatures );
+    Set<Object> dependencies = new LinkedHashSet<>();
+    dependencies.add( _psiClass );
+    dependencies.addAll( Arrays.asList( _psiClass.getSupers() ) );
+    if( _classInfo.hasLinks() )
+    {
+      for( PsiClassType iface : _classInfo.getInterfaces() )
+      {
+        addDependency( dependencies, iface.resolve() );
+      }
+      for( PsiVariable linkField : _classInfo.getLinks().keySet() )
+      {
+        addDependency( dependencies, PsiTypesUtil.getPsiClass( linkField.getType() ) );
+      }
+    }
+    return dependencies.toArray();
   }
 
-  private DelegationMaker( PsiExtensibleClass psiClass, DelegationExternalAnnotator.Info issueInfo, LinkedHashSet<PsiMember> augFeatures )
+  private static void addDependency( Set<Object> dependencies, PsiClass psiClass )
   {
-    _psiClass = psiClass;
-    _issueInfo = issueInfo;
-    _augFeatures = augFeatures;
-    _classInfo = new ClassInfo( psiClass );
+    if( psiClass != null )
+    {
+      dependencies.add( psiClass );
+    }
   }
 
   private void generateOrCheck()
@@ -122,12 +153,9 @@ public class DelegationMaker
         linkInterfaces( li );
       }
 
-      if( _augFeatures != null )
+      for( LinkInfo li : _classInfo.getLinks().values() )
       {
-        for( LinkInfo li : _classInfo.getLinks().values() )
-        {
-          _augFeatures.addAll( li.getGeneratedMethods() );
-        }
+        _augFeatures.addAll( li.getGeneratedMethods() );
       }
     }
   }
@@ -458,7 +486,7 @@ public class DelegationMaker
       LinkInfo li = entry.getValue();
       for( PsiClassType iface : ci.getInterfaces() )
       {
-        if( li.getInterfaces().stream().anyMatch( e -> e.equals( iface ) ) )
+        if( li.getInterfaceSet().contains( iface ) )
         {
           Set<LinkInfo> lis = interfaceToLinks.computeIfAbsent( iface, k -> new HashSet<>() );
           lis.add( li );
@@ -527,7 +555,7 @@ public class DelegationMaker
         {
           if( !m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) )
           {
-            processMethods( classInfo._classDecl, li, m, ifaceResolve.getSubstitutor() );
+            processMethods( li, m, ifaceResolve.getSubstitutor() );
           }
         }
       }
@@ -535,15 +563,19 @@ public class DelegationMaker
 
     // Map method types to links, so we can find overlapping methods
     Map<PsiMethod, Set<LinkInfo>> mtToLi = new HashMap<>();
+    Map<String, List<PsiMethod>> mtBySignature = new HashMap<>();
     for( Map.Entry<PsiVariable, LinkInfo> entry : classInfo.getLinks().entrySet() )
     {
       LinkInfo li = entry.getValue();
       for( CandidateInfo mt : li.getMethodTypes() )
       {
-        PsiMethod method = findMethod( mtToLi.keySet(), (PsiMethod)mt.getElement() );
+        PsiMethod m = (PsiMethod)mt.getElement();
+        List<PsiMethod> sameSignature = mtBySignature.computeIfAbsent( signatureKey( m ), __ -> new ArrayList<>() );
+        PsiMethod method = findMethod( sameSignature, m );
         if( method == null )
         {
-          method = (PsiMethod)mt.getElement();
+          method = m;
+          sameSignature.add( m );
         }
         Set<LinkInfo> linkInfos = mtToLi.computeIfAbsent( method, __ -> new HashSet<>() );
         linkInfos.add( li );
@@ -564,16 +596,15 @@ public class DelegationMaker
             MSG_METHOD_OVERLAP.get( mt.getName(), fieldNames ) );
 
           // remove the overlap method type from the link, the delegating class must implement it directly
-          CandidateInfo candi = li.findMethod( mt );
-          li.getMethodTypes().remove( candi );
+          li.removeMethodType( li.findMethod( mt ) );
         }
       }
     }
   }
 
-  private void processMethods( PsiExtensibleClass classDecl, LinkInfo li, PsiMethod m, PsiSubstitutor substitutor )
+  private void processMethods( LinkInfo li, PsiMethod m, PsiSubstitutor substitutor )
   {
-    if( findMethod( classDecl.getOwnMethods(), m ) != null )
+    if( _classInfo.findOwnMethod( m ) != null )
     {
       // class already implements method
       return;
@@ -589,7 +620,16 @@ public class DelegationMaker
     linkInfo.addMethodType( candi );
   }
 
-  private PsiMethod findMethod( Iterable<PsiMethod> methods, PsiMethod m )
+  /**
+   * Override-equivalent methods have the same name and parameter count, methods are grouped by this key so that only
+   * methods in the same group are compared
+   */
+  private static String signatureKey( PsiMethod m )
+  {
+    return m.getName() + '#' + m.getParameterList().getParametersCount();
+  }
+
+  private static PsiMethod findMethod( Iterable<PsiMethod> methods, PsiMethod m )
   {
     for( PsiMethod subMethod : methods )
     {
@@ -648,11 +688,6 @@ public class DelegationMaker
 
   private void checkSuperclass( PsiExtensibleClass psiClass )
   {
-    if( !shouldCheck() )
-    {
-      return;
-    }
-
     if( !isPartClass( psiClass ) )
     {
       return;
@@ -675,11 +710,6 @@ public class DelegationMaker
     return partAnno != null;
   }
 
-  private boolean shouldCheck()
-  {
-    return _issueInfo != null;
-  }
-
   private void reportError( PsiElement elem, String msg )
   {
     reportIssue( elem, HighlightSeverity.ERROR, msg );
@@ -692,11 +722,6 @@ public class DelegationMaker
 
   private void reportIssue( PsiElement elem, HighlightSeverity severity, String msg )
   {
-    if( !shouldCheck() )
-    {
-      return;
-    }
-
     TextRange range = new TextRange( elem.getTextRange().getStartOffset(),
       elem.getTextRange().getEndOffset() );
     _issueInfo.addIssue( severity, msg, range );
@@ -707,6 +732,7 @@ public class DelegationMaker
     private final PsiExtensibleClass _classDecl;
     private ArrayList<PsiClassType> _interfaces;
     private final Map<PsiVariable, LinkInfo> _linkInfos;
+    private Map<String, List<PsiMethod>> _ownMethodsBySignature;
 
     ClassInfo( PsiExtensibleClass classDecl )
     {
@@ -714,6 +740,20 @@ public class DelegationMaker
       _linkInfos = new HashMap<>();
     }
 
+    PsiMethod findOwnMethod( PsiMethod m )
+    {
+      if( _ownMethodsBySignature == null )
+      {
+        _ownMethodsBySignature = new HashMap<>();
+        for( PsiMethod ownMethod : _classDecl.getOwnMethods() )
+        {
+          _ownMethodsBySignature.computeIfAbsent( signatureKey( ownMethod ), __ -> new ArrayList<>() ).add( ownMethod );
+        }
+      }
+      List<PsiMethod> sameSignature = _ownMethodsBySignature.get( signatureKey( m ) );
+      return sameSignature == null ? null : findMethod( sameSignature, m );
+    }
+
     public ArrayList<PsiClassType> getInterfaces()
     {
       if( _interfaces == null )
@@ -742,7 +782,9 @@ public class DelegationMaker
 
     private final ArrayList<PsiMethod> _generatedMethods;
     private final Set<CandidateInfo> _methodTypes;
+    private final Map<String, List<CandidateInfo>> _methodTypesBySignature;
     private final ArrayList<PsiClassType> _interfaces;
+    private final Set<PsiClassType> _interfaceSet;
     private final ArrayList<PsiClassType> _shared;
     private final boolean _shareAll;
 
@@ -751,7 +793,9 @@ public class DelegationMaker
       _linkField = linkField;
       _generatedMethods = new ArrayList<>();
       _methodTypes = new HashSet<>();
+      _methodTypesBySignature = new HashMap<>();
       _interfaces = new ArrayList<>( linkedInterfaces );
+      _interfaceSet = new HashSet<>( linkedInterfaces );
       _shareAll = shareAll;
       _shared = shared;
     }
@@ -776,6 +820,11 @@ public class DelegationMaker
       return _interfaces;
     }
 
+    Set<PsiClassType> getInterfaceSet()
+    {
+      return _interfaceSet;
+    }
+
     public Set<CandidateInfo> getMethodTypes()
     {
       return _methodTypes;
@@ -783,25 +832,34 @@ public class DelegationMaker
 
     void addMethodType( CandidateInfo m )
     {
-      _methodTypes.add( m );
+      if( _methodTypes.add( m ) )
+      {
+        _methodTypesBySignature.computeIfAbsent( signatureKey( (PsiMethod)m.getElement() ), __ -> new ArrayList<>() ).add( m );
+      }
     }
 
-    public boolean hasMethod( CandidateInfo candi )
+    void removeMethodType( CandidateInfo m )
     {
-      return _methodTypes.stream().anyMatch( m -> areOverrideEquivalent( candi, m ) );
+      if( m != null && _methodTypes.remove( m ) )
+      {
+        _methodTypesBySignature.get( signatureKey( (PsiMethod)m.getElement() ) ).remove( m );
+      }
     }
 
-    private boolean areOverrideEquivalent( CandidateInfo candi, CandidateInfo m )
+    public boolean hasMethod( CandidateInfo candi )
     {
-      return ((PsiMethod)candi.getElement()).getName().equals( ((PsiMethod)m.getElement()).getName() ) &&
-        MethodSignatureUtil.areOverrideEquivalent( (PsiMethod)m.getElement(), (PsiMethod)candi.getElement() );
+      return findMethod( (PsiMethod)candi.getElement() ) != null;
     }
 
     public CandidateInfo findMethod( PsiMethod method )
     {
-      return _methodTypes.stream()
-        .filter( m -> method.getName().equals( ((PsiMethod)m.getElement()).getName() ) &&
-          MethodSignatureUtil.areOverrideEquivalent( (PsiMethod)m.getElement(), method ) )
+      List<CandidateInfo> sameSignature = _methodTypesBySignature.get( signatureKey( method ) );
+      if( sameSignature == null )
+      {
+        return null;
+      }
+      return sameSignature.stream()
+        .filter( m -> MethodSignatureUtil.areOverrideEquivalent( (PsiMethod)m.getElement(), method ) )
         .findFirst().orElse( null );
     }
 
@@ -810,4 +868,28 @@ public class DelegationMaker
       return _shareAll || _shared.stream().anyMatch( t -> t.equals( TypeConversionUtil.erasure( iface ) ) );
     }
   }
+
+  static class Model
+  {
+    static final Model EMPTY = new Model( Collections.emptyList(), DelegationExternalAnnotator.Info.EMPTY );
+
+    private final List<PsiMethod> _generatedMethods;
+    private final DelegationExternalAnnotator.Info _issueInfo;
+
+    private Model( List<PsiMethod> generatedMethods, DelegationExternalAnnotator.Info issueInfo )
+    {
+      _generatedMethods = generatedMethods;
+      _issueInfo = issueInfo;
+    }
+
+    List<PsiMethod> getGeneratedMethods()
+    {
+      return _generatedMethods;
+    }
+
+    DelegationExternalAnnotator.Info getIssueInfo()
+    {
+      return _issueInfo;
+    }
+  }
 }
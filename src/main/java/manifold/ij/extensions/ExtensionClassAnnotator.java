@@ -20,10 +20,8 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.module.Module;
-import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.FileIndexUtil;
 import com.intellij.openapi.util.TextRange;
@@ -63,24 +61,28 @@ import static manifold.api.type.ContributorKind.Supplemental;
 
 /**
  */
-public class ExtensionClassAnnotator implements Annotator
+public class ExtensionClassAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiPackageStatement.class, PsiAnnotation.class, PsiJavaCodeReferenceElement.class, PsiMethod.class,
+    PsiModifierList.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      // Manifold jars are not used in the project
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
-    if( DumbService.getInstance( element.getProject() ).isDumb() )
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
+    if( context.isDumb() )
     {
       // skip processing during index rebuild
       return;
     }
 
-    PsiClass psiExtensionClass = findExtensionClass( element );
+    PsiClass psiExtensionClass = context.getExtensionClass();
 
     if( psiExtensionClass != null )
     {
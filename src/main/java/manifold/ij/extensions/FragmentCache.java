@@ -20,28 +20,45 @@
 package manifold.ij.extensions;
 
 
-import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
-import com.intellij.util.FileContentUtilCore;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import manifold.api.fs.IFileFragment;
+import manifold.ij.core.ManProject;
+import manifold.ij.util.DelayedRunner;
+import manifold.ij.util.ReparseUtil;
 import manifold.ij.util.SlowOperationsUtil;
 import manifold.util.concurrent.ConcurrentHashSet;
+import org.jetbrains.annotations.TestOnly;
 
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FragmentCache
 {
+  private static final Logger LOG = Logger.getInstance( FragmentCache.class );
+  private static final int REFRESH_DELAY_MS = 300;
+
   private static FragmentCache INSTANCE;
 
   private final ConcurrentHashMap<Project, ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>>> _cache;
   private final ConcurrentHashSet<CacheAdder> _queuedAdds = new ConcurrentHashSet<>();
-  private final Set<Project> _reparsingAll = new ConcurrentHashSet<>();
+  private final ConcurrentHashMap<Project, RefreshQueue> _refreshQueues = new ConcurrentHashMap<>();
+  private final DelayedRunner _refreshRunner = new DelayedRunner();
 
 
   public static FragmentCache instance()
@@ -114,22 +131,56 @@ public class FragmentCache
     ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>> projCache =
       _cache.computeIfAbsent( project, __ -> new ConcurrentHashMap<>() );
     MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer = projCache.get( fqn );
-    if( smartPointer == null )
+    PsiFileFragment psiFileFragment = smartPointer == null ? null : smartPointer.getElement();
+    if( psiFileFragment != null && psiFileFragment.isValid() )
     {
+      // note, this only queues the refresh, the caller holds ManifoldPsiClassCache's monitor
+      psiFileFragment.handleFragments( (PsiJavaFile)psiFileFragment.getContainingFile() );
       return;
     }
 
-    PsiFileFragment psiFileFragment = smartPointer.getElement();
-    if( psiFileFragment != null && psiFileFragment.isValid() )
+    if( smartPointer != null )
     {
-      psiFileFragment.handleFragments( (PsiJavaFile)psiFileFragment.getContainingFile() );
+      projCache.remove( fqn );
     }
-    else
+
+    // the host file may not be tokenized yet e.g., not opened since restart, find the fragment in the index, but only
+    // if the index has a fragment by that name, this is called for every class name missing from the cache
+    if( ManFileFragmentIndex.mayHaveFragment( project, fqn, GlobalSearchScope.projectScope( project ) ) )
     {
-      projCache.remove( fqn );
+      findFragmentLater( project, fqn );
     }
   }
 
+  /**
+   * Finds the fragment named {@code fqn} in the index and processes it in a background read action, since that may
+   * load and parse a closed host file. Then the type system is refreshed, which highlights the host file again.
+   */
+  private void findFragmentLater( Project project, String fqn )
+  {
+    ReadAction.nonBlocking( () -> {
+        PsiFileFragment psiFileFragment =
+          ManFileFragmentIndex.findFragment( project, fqn, GlobalSearchScope.projectScope( project ) );
+        if( psiFileFragment == null || !psiFileFragment.isValid() )
+        {
+          return false;
+        }
+        // queues the refresh, along with highlighting the host file again
+        psiFileFragment.handleFragments( (PsiJavaFile)psiFileFragment.getContainingFile() );
+        return true;
+      } )
+      .inSmartMode( project )
+      .expireWith( project )
+      .coalesceBy( this, project, fqn )
+      .finishOnUiThread( ModalityState.defaultModalityState(), found -> {
+        if( found )
+        {
+          refreshLater( project );
+        }
+      } )
+      .submit( AppExecutorUtil.getAppExecutorService() );
+  }
+
   private void updateCache()
   {
     expungeDisposedProjects();
@@ -139,6 +190,7 @@ public class FragmentCache
   private void expungeDisposedProjects()
   {
     _cache.keySet().removeIf( Project::isDisposed );
+    _refreshQueues.keySet().removeIf( Project::isDisposed );
   }
 
   private void flushQueuedAdds()
@@ -162,62 +214,277 @@ public class FragmentCache
   }
 
   /**
-   * Reparse all parsed files that have at least one fragment
+   * Refresh the type system with all the fragments in parsed files, e.g., after the type system is reset. Rather than
+   * reparsing the host files, the fragments are processed again in the background and highlighting is restarted in
+   * the host files that still have them.
    */
-  public void reparseAll( Project project )
+  public void refreshAll( Project project )
+  {
+    refreshAll( project, null );
+  }
+
+  /**
+   * Like {@link #refreshAll(Project)}, but only for fragments in files of {@code ijModules}, all fragments if null
+   */
+  public void refreshAll( Project project, Set<Module> ijModules )
+  {
+    ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>> projCache = _cache.get( project );
+    if( projCache == null )
+    {
+      return;
+    }
+
+    RefreshQueue queue = getRefreshQueue( project );
+    projCache.forEach( ( fqn, pointer ) -> {
+      if( ijModules == null || isInModules( pointer, ijModules ) )
+      {
+        queue.add( fqn, new PendingRefresh( null, pointer, null ) );
+      }
+    } );
+    scheduleRefresh( project );
+  }
+
+  private static boolean isInModules( MaybeSmartPsiElementPointer<PsiFileFragment> pointer, Set<Module> ijModules )
+  {
+    PsiFileFragment fragment = pointer.getElement();
+    if( fragment == null || !fragment.isValid() )
+    {
+      // let the refresh sort it out
+      return true;
+    }
+    Module ijModule = ModuleUtilCore.findModuleForPsiElement( fragment );
+    return ijModule == null || ijModules.contains( ijModule );
+  }
+
+  /**
+   * Queue a deleted/created refresh of the type system for a new or changed {@code fragment} in {@code host}. The
+   * refresh is processed after a short delay in a background read action. If the same fragment is queued again before
+   * then, only the latest is processed.
+   *
+   * @param rehighlight If not null, the fragment element whose host file is highlighted again after the refresh
+   */
+  void queueRefresh( PsiJavaFile host, IFileFragment fragment, MaybeSmartPsiElementPointer<PsiFileFragment> rehighlight )
+  {
+    Project project = host.getProject();
+    getRefreshQueue( project ).add( makeRefreshKey( host, fragment ), new PendingRefresh( fragment, null, rehighlight ) );
+    scheduleRefresh( project );
+  }
+
+  private static String makeRefreshKey( PsiJavaFile host, IFileFragment fragment )
+  {
+    return host.getViewProvider().getVirtualFile().getPath() + '!' + fragment.getName();
+  }
+
+  private RefreshQueue getRefreshQueue( Project project )
+  {
+    return _refreshQueues.computeIfAbsent( project, RefreshQueue::new );
+  }
+
+  private void scheduleRefresh( Project project )
+  {
+    _refreshRunner.scheduleTask( project.getLocationHash(), REFRESH_DELAY_MS, () -> refreshLater( project ) );
+  }
+
+  /**
+   * Processes the queued refreshes in a background read action, only highlighting the host files again is left for
+   * the event thread. A write action cancels the read action and it starts over with the refreshes still queued.
+   * Refreshes of the same project are coalesced, so they never run concurrently.
+   */
+  private void refreshLater( Project project )
+  {
+    ReadAction.nonBlocking( () -> processRefreshQueue( project ) )
+      .expireWith( project )
+      .coalesceBy( this, project )
+      .finishOnUiThread( ModalityState.defaultModalityState(), __ -> restartHighlighting( project ) )
+      .submit( AppExecutorUtil.getAppExecutorService() );
+  }
+
+  private void processRefreshQueue( Project project )
+  {
+    if( project.isDisposed() )
+    {
+      _refreshQueues.remove( project );
+      _cache.remove( project );
+      return;
+    }
+
+    updateCache();
+
+    RefreshQueue queue = _refreshQueues.get( project );
+    if( queue != null )
+    {
+      queue.process();
+    }
+  }
+
+  private void restartHighlighting( Project project )
   {
-    if( _reparsingAll.contains( project ) )
+    RefreshQueue queue = _refreshQueues.get( project );
+    if( queue == null || project.isDisposed() )
     {
       return;
     }
 
-    _reparsingAll.add( project );
-    try
+    for( PsiFile host : queue.drainRehighlight() )
     {
-      ApplicationManager.getApplication().invokeLater( () ->
+      if( host.isValid() )
       {
-        try
-        {
-          ApplicationManager.getApplication().runReadAction( () ->
-          {
-            if( project.isDisposed() )
-            {
-              _cache.remove( project );
-              return;
-            }
-
-            updateCache();
-
-            // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
-            SlowOperationsUtil.allowSlowOperation( "manifold.fragments",
-              () -> {
-                Set<PsiFile> files = new HashSet<>();
-                ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>> projCache = _cache.get( project );
-                for( MaybeSmartPsiElementPointer<PsiFileFragment> value : projCache.values() )
-                {
-                  PsiFileFragment psiFileFragment = value.getElement();
-                  if( psiFileFragment != null )
-                  {
-                    PsiFile containingFile = psiFileFragment.getContainingFile();
-                    if( containingFile.getProject() == project )
-                    {
-                      files.add( containingFile );
-                    }
-                  }
-                }
-                FileContentUtilCore.reparseFiles( files.stream().map( f -> f.getVirtualFile() ).toList() );
-              } );
-          } );
-        }
-        finally
+        ReparseUtil.instance().rerunAnnotators( host );
+      }
+    }
+  }
+
+  /**
+   * @return The number of fragment refreshes waiting to be processed for {@code project}
+   */
+  public int getRefreshQueueDepth( Project project )
+  {
+    RefreshQueue queue = _refreshQueues.get( project );
+    return queue == null ? 0 : queue._pending.size();
+  }
+
+  /**
+   * @return The number of fragment refreshes processed so far for {@code project}
+   */
+  public long getRefreshCount( Project project )
+  {
+    RefreshQueue queue = _refreshQueues.get( project );
+    return queue == null ? 0 : queue._processedCount.get();
+  }
+
+  /**
+   * @return The longest time in milliseconds a fragment refresh waited in the queue before it was processed
+   */
+  public long getMaxRefreshLatencyMillis( Project project )
+  {
+    RefreshQueue queue = _refreshQueues.get( project );
+    return queue == null ? 0 : TimeUnit.NANOSECONDS.toMillis( queue._maxLatencyNanos.get() );
+  }
+
+  /**
+   * Process queued fragment refreshes now, instead of waiting for the delay.
+   */
+  @TestOnly
+  public void flushRefreshQueue( Project project )
+  {
+    ReadAction.run( () -> processRefreshQueue( project ) );
+    restartHighlighting( project );
+  }
+
+  private class RefreshQueue
+  {
+    private final Project _project;
+    private final ConcurrentHashMap<String, PendingRefresh> _pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashSet<PsiFile> _rehighlight = new ConcurrentHashSet<>();
+    private final AtomicLong _processedCount = new AtomicLong();
+    private final AtomicLong _maxLatencyNanos = new AtomicLong();
+
+    private RefreshQueue( Project project )
+    {
+      _project = project;
+    }
+
+    private void add( String key, PendingRefresh refresh )
+    {
+      // merge with a pending refresh of the same fragment, the latest wins but keeps the time it was first queued
+      _pending.merge( key, refresh, ( older, newer ) -> newer.queuedSince( older ) );
+    }
+
+    /**
+     * Note, an entry is removed only if it was not queued again while it was processed, otherwise the newer one is
+     * processed next time. The host files to highlight again are kept until drained, so they survive a cancelled run.
+     */
+    private void process()
+    {
+      int depth = _pending.size();
+      long start = System.nanoTime();
+      for( Map.Entry<String, PendingRefresh> entry : _pending.entrySet() )
+      {
+        ProgressManager.checkCanceled();
+
+        PendingRefresh refresh = entry.getValue();
+        refresh.process( _project, _rehighlight );
+
+        if( _pending.remove( entry.getKey(), refresh ) )
         {
-          _reparsingAll.remove( project );
+          _processedCount.incrementAndGet();
+          _maxLatencyNanos.accumulateAndGet( System.nanoTime() - refresh._queuedAt, Math::max );
         }
-      } );
+      }
+      if( depth > 0 && LOG.isDebugEnabled() )
+      {
+        LOG.debug( "Processed " + depth + " fragment refreshes in " +
+          TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) + "ms, max latency: " +
+          TimeUnit.NANOSECONDS.toMillis( _maxLatencyNanos.get() ) + "ms" );
+      }
+    }
+
+    private Set<PsiFile> drainRehighlight()
+    {
+      Set<PsiFile> hosts = new HashSet<>();
+      for( Iterator<PsiFile> iterator = _rehighlight.iterator(); iterator.hasNext(); )
+      {
+        hosts.add( iterator.next() );
+        iterator.remove();
+      }
+      return hosts;
+    }
+  }
+
+  /**
+   * Either a fragment to refresh in the type system, or a cached fragment element to process again.
+   */
+  private static class PendingRefresh
+  {
+    private final IFileFragment _fragment;
+    private final MaybeSmartPsiElementPointer<PsiFileFragment> _pointer;
+    private final MaybeSmartPsiElementPointer<PsiFileFragment> _rehighlight;
+    private long _queuedAt;
+
+    private PendingRefresh( IFileFragment fragment, MaybeSmartPsiElementPointer<PsiFileFragment> pointer,
+                            MaybeSmartPsiElementPointer<PsiFileFragment> rehighlight )
+    {
+      _fragment = fragment;
+      _pointer = pointer;
+      _rehighlight = rehighlight;
+      _queuedAt = System.nanoTime();
     }
-    catch( Throwable t )
+
+    private PendingRefresh queuedSince( PendingRefresh older )
+    {
+      _queuedAt = older._queuedAt;
+      return this;
+    }
+
+    private void process( Project project, Set<PsiFile> rehighlight )
     {
-      _reparsingAll.remove( project );
+      if( _fragment != null )
+      {
+        ManRefreshListener refresher = ManProject.manProjectFrom( project ).getFileModificationManager().getManRefresher();
+        // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
+        SlowOperationsUtil.allowSlowOperation( "manifold.fragments", () -> {
+          refresher.deleted( _fragment );
+          refresher.created( _fragment );
+        } );
+
+        PsiFileFragment psiFileFragment = _rehighlight == null ? null : _rehighlight.getElement();
+        if( psiFileFragment != null && psiFileFragment.isValid() )
+        {
+          // the fragment's type may be referenced anywhere in the host file
+          rehighlight.add( psiFileFragment.getContainingFile() );
+        }
+        return;
+      }
+
+      PsiFileFragment psiFileFragment = _pointer.getElement();
+      if( psiFileFragment == null || !psiFileFragment.isValid() ||
+        !(psiFileFragment.getContainingFile() instanceof PsiJavaFile) )
+      {
+        return;
+      }
+      PsiJavaFile host = (PsiJavaFile)psiFileFragment.getContainingFile();
+      psiFileFragment.handleFragments( host );
+      rehighlight.add( host );
     }
   }
 
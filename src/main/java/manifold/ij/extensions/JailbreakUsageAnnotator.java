@@ -20,7 +20,6 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.psi.JavaTokenType;
 import com.intellij.psi.PsiAssignmentExpression;
@@ -30,22 +29,25 @@ import com.intellij.psi.PsiPostfixExpression;
 import com.intellij.psi.PsiPrefixExpression;
 import com.intellij.psi.PsiReferenceExpression;
 import com.intellij.psi.tree.IElementType;
+import java.util.List;
 import manifold.ExtIssueMsg;
 import manifold.ext.rt.api.Jailbreak;
-import manifold.ij.core.ManProject;
 import org.jetbrains.annotations.NotNull;
 
-public class JailbreakUsageAnnotator implements Annotator
+public class JailbreakUsageAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiPostfixExpression.class, PsiPrefixExpression.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      // Manifold jars are not used in the project
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
     prohibitPostfixAssignmentUse( element, holder );
     prohibitPrefixAssignmentUse( element, holder );
   }
@@ -45,6 +45,11 @@ public class ManElementDescriptionProvider implements ElementDescriptionProvider
       return ((FakeTargetElement)element).getKind();
     }
 
+    if( element instanceof ManPreprocessorSymbol )
+    {
+      return location instanceof UsageViewTypeLocation ? "preprocessor symbol" : ((ManPreprocessorSymbol)element).getSymbolName();
+    }
+
     return null;
   }
 }
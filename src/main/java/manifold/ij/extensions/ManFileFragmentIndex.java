@@ -0,0 +1,281 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import manifold.internal.javac.FragmentProcessor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Indexes Java files by the file fragments embedded in their comments and string literals. Each package name maps to
+ * the names of the fragments declared in the file and the offsets of their headers.
+ * <p/>
+ * Otherwise, fragments are only known after their host files are tokenized, which is what {@link FragmentCache} is
+ * made of. With this index a fragment type resolves from a file that has not been opened since the IDE started.
+ */
+public class ManFileFragmentIndex extends FileBasedIndexExtension<String, Map<String, Integer>>
+{
+  public static final ID<String, Map<String, Integer>> NAME = ID.create( "manifold.file.fragments" );
+
+  private static final Pattern PACKAGE = Pattern.compile( "^\\s*package\\s+([\\w.\\s]+?)\\s*;", Pattern.MULTILINE );
+  private static final Pattern HEADER = Pattern.compile(
+    Pattern.quote( FragmentProcessor.FRAGMENT_START ) + "\\s*([A-Za-z_$][\\w$]*)\\.\\w+\\s*" +
+    Pattern.quote( FragmentProcessor.FRAGMENT_END ) );
+
+  @NotNull
+  @Override
+  public ID<String, Map<String, Integer>> getName()
+  {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, Map<String, Integer>, FileContent> getIndexer()
+  {
+    return fileContent -> collectFragments( fileContent.getContentAsText() );
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor()
+  {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<Map<String, Integer>> getValueExternalizer()
+  {
+    return new DataExternalizer<>()
+    {
+      @Override
+      public void save( @NotNull DataOutput out, Map<String, Integer> fragments ) throws IOException
+      {
+        DataInputOutputUtil.writeINT( out, fragments.size() );
+        for( Map.Entry<String, Integer> entry: fragments.entrySet() )
+        {
+          IOUtil.writeUTF( out, entry.getKey() );
+          DataInputOutputUtil.writeINT( out, entry.getValue() );
+        }
+      }
+
+      @Override
+      public Map<String, Integer> read( @NotNull DataInput in ) throws IOException
+      {
+        int size = DataInputOutputUtil.readINT( in );
+        Map<String, Integer> fragments = new HashMap<>( size );
+        for( int i = 0; i < size; i++ )
+        {
+          fragments.put( IOUtil.readUTF( in ), DataInputOutputUtil.readINT( in ) );
+        }
+        return fragments;
+      }
+    };
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 1;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  @Override
+  public boolean dependsOnFileContent()
+  {
+    return true;
+  }
+
+  /**
+   * @return The names of the file fragments declared in {@code packageName} within {@code scope}. Empty if the index is
+   * not available.
+   */
+  public static Set<String> findFragmentNames( @NotNull Project project, @NotNull String packageName,
+                                               @NotNull GlobalSearchScope scope )
+  {
+    if( DumbService.getInstance( project ).isDumb() )
+    {
+      return Collections.emptySet();
+    }
+
+    Set<String> names = new LinkedHashSet<>();
+    try
+    {
+      for( Map<String, Integer> fragments: FileBasedIndex.getInstance().getValues( NAME, packageName, scope ) )
+      {
+        names.addAll( fragments.keySet() );
+      }
+    }
+    catch( IndexNotReadyException e )
+    {
+      return Collections.emptySet();
+    }
+    return names;
+  }
+
+  /**
+   * Finds the comment or string literal hosting the fragment named {@code fqn}. Note this loads the host file's PSI if
+   * necessary, but does not open the file.
+   *
+   * @return The fragment's host element or null if the index does not have {@code fqn} or is not available
+   */
+  static PsiFileFragment findFragment( @NotNull Project project, @NotNull String fqn, @NotNull GlobalSearchScope scope )
+  {
+    if( DumbService.getInstance( project ).isDumb() )
+    {
+      return null;
+    }
+
+    // the PSI is resolved after the index is processed, since loading a host file may lex it, which queries indexes
+    Map<VirtualFile, Integer> headers = new LinkedHashMap<>();
+    String name = getSimpleName( fqn );
+    try
+    {
+      FileBasedIndex.getInstance().processValues( NAME, getPackageName( fqn ), null,
+        ( file, fragments ) -> {
+          Integer offset = fragments.get( name );
+          if( offset != null )
+          {
+            headers.put( file, offset );
+          }
+          return true;
+        }, scope );
+    }
+    catch( IndexNotReadyException e )
+    {
+      return null;
+    }
+
+    PsiManager psiManager = PsiManager.getInstance( project );
+    for( Map.Entry<VirtualFile, Integer> header: headers.entrySet() )
+    {
+      PsiFile psiFile = psiManager.findFile( header.getKey() );
+      if( psiFile instanceof PsiJavaFile )
+      {
+        PsiElement elem = psiFile.findElementAt( header.getValue() );
+        if( elem instanceof PsiFileFragment )
+        {
+          return (PsiFileFragment)elem;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A cheap check before {@link #findFragment}, it only queries the index.
+   *
+   * @return False if no file in {@code scope} declares a fragment named {@code fqn}. True if one may, also if the
+   * index is not available.
+   */
+  static boolean mayHaveFragment( @NotNull Project project, @NotNull String fqn, @NotNull GlobalSearchScope scope )
+  {
+    if( DumbService.getInstance( project ).isDumb() )
+    {
+      return true;
+    }
+
+    String name = getSimpleName( fqn );
+    boolean[] found = {false};
+    try
+    {
+      FileBasedIndex.getInstance().processValues( NAME, getPackageName( fqn ), null,
+        ( file, fragments ) -> {
+          found[0] = fragments.containsKey( name );
+          return !found[0];
+        }, scope );
+    }
+    catch( IndexNotReadyException e )
+    {
+      return true;
+    }
+    return found[0];
+  }
+
+  private static String getPackageName( String fqn )
+  {
+    int iDot = fqn.lastIndexOf( '.' );
+    return iDot < 0 ? "" : fqn.substring( 0, iDot );
+  }
+
+  private static String getSimpleName( String fqn )
+  {
+    return fqn.substring( fqn.lastIndexOf( '.' ) + 1 );
+  }
+
+  /**
+   * Finds the fragment headers in a Java file. This is a cheap text scan, it does not parse the file, so a header is a
+   * candidate until {@link #findFragment} finds a comment or string literal at its offset.
+   *
+   * @return A map of the file's package name to a map of fragment name to header offset
+   */
+  public static Map<String, Map<String, Integer>> collectFragments( CharSequence text )
+  {
+    if( !StringUtil.contains( text, FragmentProcessor.FRAGMENT_END ) )
+    {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Integer> fragments = new HashMap<>();
+    Matcher header = HEADER.matcher( text );
+    while( header.find() )
+    {
+      fragments.putIfAbsent( header.group( 1 ), header.start() );
+    }
+    if( fragments.isEmpty() )
+    {
+      return Collections.emptyMap();
+    }
+
+    Matcher pkg = PACKAGE.matcher( text );
+    String packageName = pkg.find() ? pkg.group( 1 ).replaceAll( "\\s", "" ) : "";
+    return Collections.singletonMap( packageName, fragments );
+  }
+}
@@ -33,7 +33,10 @@ import com.intellij.psi.impl.source.tree.java.*;
 import com.intellij.psi.infos.MethodCandidateInfo;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiUtil;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import manifold.ext.rt.api.Jailbreak;
 import manifold.ij.core.ManModule;
@@ -59,6 +62,61 @@ import static manifold.ij.extensions.ManAugmentProvider.KEY_MAN_INTERFACE_EXTENS
  */
 public class ManHighlightInfoFilter implements HighlightInfoFilter
 {
+  /**
+   * Routes a highlight's description to the filters that can possibly apply to it. A filter is routed if its
+   * description contains any of the filter's trigger phrases, which is a superset of the conditions the filter tests,
+   * so routing only skips filters that would return false anyway. Filters without a description test are always routed.
+   */
+  private static final Map<String, EnumSet<Route>> ROUTES = new LinkedHashMap<>();
+  private static final EnumSet<Route> ALWAYS = EnumSet.of( Route.UnclosedComment, Route.InterfaceError );
+  static
+  {
+    addRoute( Route.ComparedUsingEquals, "compared using '==", "compared using '!=", "使用 '==' 而不是", "使用 '!=' 而不是" );
+    addRoute( Route.CanBeReplacedWith, "can be replaced with", "可被替换为" );
+    addRoute( Route.CastingStructuralInterface, "'ClassCastException'" );
+    addRoute( Route.ArrayIndexIsOutOfBounds, "Array index is out of bounds", "数组索引超出范围" );
+    addRoute( Route.TemplateUnnecessarySemicolon, "Unnecessary semicolon", "不必要的分号" );
+    addRoute( Route.CallToToStringOnArray, "Call to 'toString()' on array" );
+    addRoute( Route.UpdatedButNeverQueried, "updated, but never queried", "更新，但从未被查询", "is never used" );
+    addRoute( Route.UnhandledCheckedExceptions, "Unhandled exception", "未处理的异常", "未处理 异常" );
+    addRoute( Route.AmbiguousMethods, "Ambiguous method call", "方法调用不明确" );
+    addRoute( Route.IllegalEscapedCharDollars, "Illegal escape character", "字符串文字中的非法转义字符" );
+    addRoute( Route.CannotAssignToFinalIfJailbreak, "Cannot assign a value to final variable", "无法将值赋给 final 变量" );
+    addRoute( Route.OperatorCannotBeApplied, "cannot be applied to", "不能应用于" );
+    addRoute( Route.IncDecExprCannotBeApplied, "cannot be applied to", "不能应用于" );
+    addRoute( Route.IncompatibleTypesWithCompoundAssignment, "Incompatible types", "不兼容的类型" );
+    addRoute( Route.OperatorCannotBeAppliedToWithCompoundAssignment, "cannot be applied to", "不能应用于" );
+    addRoute( Route.ArrayTypeExpected, "Array type expected", "应为数组类型" );
+    addRoute( Route.VariableExpected, "Variable expected", "应为变量" );
+    addRoute( Route.AnyAnnoTypeError, "Incompatible types", "不兼容的类型" );
+    addRoute( Route.IncompatibleReturnType, "incompatible return type", "返回类型不兼容" );
+    addRoute( Route.ForeachExpressionErrors, "foreach not applicable to type", "oreach 不适用于类型" );
+    addRoute( Route.InnerClassReferenceError, "cannot be referenced from a static context",
+      "Static method may be invoked on containing interface class only", "Expected class or package" );
+    addRoute( Route.UsageOfApiNewerThanError, "Usage of API documented as" );
+  }
+
+  private static void addRoute( Route route, String... triggers )
+  {
+    for( String trigger: triggers )
+    {
+      ROUTES.computeIfAbsent( trigger, k -> EnumSet.noneOf( Route.class ) ).add( route );
+    }
+  }
+
+  public static EnumSet<Route> route( @NotNull String description )
+  {
+    EnumSet<Route> routes = EnumSet.copyOf( ALWAYS );
+    for( Map.Entry<String, EnumSet<Route>> entry: ROUTES.entrySet() )
+    {
+      if( description.contains( entry.getKey() ) )
+      {
+        routes.addAll( entry.getValue() );
+      }
+    }
+    return routes;
+  }
+
   /**
    * Override to filter errors related to type incompatibilities arising from a
    * manifold extension adding an interface to an existing classpath class (as opposed
@@ -79,46 +137,54 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( hi.getDescription() == null )
+    String description = hi.getDescription();
+    if( description == null )
     {
       return true;
     }
 
+    return accept( hi, file, route( description ) );
+  }
+
+  boolean accept( @NotNull HighlightInfo hi, @NotNull PsiFile file, EnumSet<Route> routes )
+  {
+    FilterContext ctx = new FilterContext( hi, file );
+
     //
     // Handle Warnings OR Errors...
     //
 
-    if( filterComparedUsingEquals( hi, file ) )
+    if( routes.contains( Route.ComparedUsingEquals ) && filterComparedUsingEquals( hi, ctx ) )
     {
       return false;
     }
 
-    if( filterCanBeReplacedWith( hi, file ) )
+    if( routes.contains( Route.CanBeReplacedWith ) && filterCanBeReplacedWith( hi, ctx ) )
     {
       return false;
     }
 
-    if( filterCastingStructuralInterfaceWarning( hi, file ) )
+    if( routes.contains( Route.CastingStructuralInterface ) && filterCastingStructuralInterfaceWarning( hi, ctx ) )
     {
       return false;
     }
 
-    if( filterArrayIndexIsOutOfBounds( hi, file ) )
+    if( routes.contains( Route.ArrayIndexIsOutOfBounds ) && filterArrayIndexIsOutOfBounds( hi, ctx ) )
     {
       return false;
     }
 
-    if( filterTemplateUnnecessarySemicolon( hi, file ) )
+    if( routes.contains( Route.TemplateUnnecessarySemicolon ) && filterTemplateUnnecessarySemicolon( hi, file ) )
     {
       return false;
     }
 
-    if( filterCallToToStringOnArray( hi, file ) )
+    if( routes.contains( Route.CallToToStringOnArray ) && filterCallToToStringOnArray( hi, file ) )
     {
       return false;
     }
 
-    if( filterUpdatedButNeverQueried( hi, file ) )
+    if( routes.contains( Route.UpdatedButNeverQueried ) && filterUpdatedButNeverQueried( hi, ctx ) )
     {
       return false;
     }
@@ -131,12 +197,12 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     // Handle only Errors...
     //
 
-    if( filterUnhandledCheckedExceptions( hi, file ) )
+    if( routes.contains( Route.UnhandledCheckedExceptions ) && filterUnhandledCheckedExceptions( hi, file ) )
     {
       return false;
     }
 
-    PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
+    PsiElement firstElem = ctx.getFirstElem();
     if( firstElem == null )
     {
       return true;
@@ -148,7 +214,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( filterAmbiguousMethods( hi, firstElem ) )
+    if( routes.contains( Route.AmbiguousMethods ) && filterAmbiguousMethods( hi, firstElem ) )
     {
       return false;
     }
@@ -159,73 +225,76 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( filterIllegalEscapedCharDollars( hi, firstElem, elem ) )
+    if( routes.contains( Route.IllegalEscapedCharDollars ) && filterIllegalEscapedCharDollars( hi, firstElem, elem ) )
     {
       return false;
     }
 
-    if( filterCannotAssignToFinalIfJailbreak( hi, firstElem ) )
+    if( routes.contains( Route.CannotAssignToFinalIfJailbreak ) && filterCannotAssignToFinalIfJailbreak( hi, firstElem ) )
     {
       return false;
     }
 
-    if( filterUnclosedComment( hi, firstElem ) )
+    if( routes.contains( Route.UnclosedComment ) && filterUnclosedComment( hi, firstElem ) )
     {
       return false;
     }
 
-    if( filterOperatorCannotBeApplied( hi, elem, firstElem ) )
+    if( routes.contains( Route.OperatorCannotBeApplied ) && filterOperatorCannotBeApplied( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterPrefixExprCannotBeApplied( hi, elem, firstElem ) ||
-        filterPostfixExprCannotBeApplied( hi, elem, firstElem ) )
+    if( routes.contains( Route.IncDecExprCannotBeApplied ) &&
+        (filterPrefixExprCannotBeApplied( hi, elem, firstElem ) ||
+         filterPostfixExprCannotBeApplied( hi, elem, firstElem )) )
     {
       return false;
     }
 
-    if( filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+    if( routes.contains( Route.IncompatibleTypesWithCompoundAssignment ) &&
+        filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+    if( routes.contains( Route.OperatorCannotBeAppliedToWithCompoundAssignment ) &&
+        filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
     {
       return false;
     }
 
     // handle indexed operator overloading
-    if( filterArrayTypeExpected( hi, elem, firstElem ) )
+    if( routes.contains( Route.ArrayTypeExpected ) && filterArrayTypeExpected( hi, elem, firstElem ) )
     {
       return false;
     }
-    if( filterVariableExpected( hi, elem, firstElem ) )
+    if( routes.contains( Route.VariableExpected ) && filterVariableExpected( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterAnyAnnoTypeError( hi, elem, firstElem ) )
+    if( routes.contains( Route.AnyAnnoTypeError ) && filterAnyAnnoTypeError( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterIncompatibleReturnType( hi, elem, firstElem ) )
+    if( routes.contains( Route.IncompatibleReturnType ) && filterIncompatibleReturnType( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterForeachExpressionErrors( hi, elem, firstElem ) )
+    if( routes.contains( Route.ForeachExpressionErrors ) && filterForeachExpressionErrors( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterInnerClassReferenceError( hi, elem, firstElem ) )
+    if( routes.contains( Route.InnerClassReferenceError ) && filterInnerClassReferenceError( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterUsageOfApiNewerThanError( hi, elem, firstElem ) )
+    if( routes.contains( Route.UsageOfApiNewerThanError ) && filterUsageOfApiNewerThanError( hi, elem, firstElem ) )
     {
       return false;
     }
@@ -234,10 +303,13 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     //## structural interface extensions cannot be added to the psiClass, so for now we suppress "incompatible type
     //## errors" or similar involving a structural interface extension :(
     //##
-    Boolean x = acceptInterfaceError( hi, firstElem, elem );
-    if( x != null )
+    if( routes.contains( Route.InterfaceError ) )
     {
-      return x;
+      Boolean x = acceptInterfaceError( hi, firstElem, elem );
+      if( x != null )
+      {
+        return x;
+      }
     }
 
     return true;
@@ -252,7 +324,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   // Operator overloading: Filter warning messages like "Number objects are compared using '==', not 'equals()'"
-  private boolean filterComparedUsingEquals( HighlightInfo hi, PsiFile file )
+  private boolean filterComparedUsingEquals( HighlightInfo hi, FilterContext ctx )
   {
     if( hi != null )
     {
@@ -263,7 +335,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
          (description.contains( "使用 '==' 而不是" ) ||
            description.contains( "使用 '!=' 而不是" ))) )
       {
-        PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
+        PsiElement firstElem = ctx.getFirstElem();
         if( firstElem != null )
         {
           PsiElement parent = firstElem.getParent();
@@ -279,7 +351,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   // Filter warning messages like "1 Xxx can be replaced with Xxx" where '1 Xxx' is a binding expression
-  private boolean filterCanBeReplacedWith( HighlightInfo hi, PsiFile file )
+  private boolean filterCanBeReplacedWith( HighlightInfo hi, FilterContext ctx )
   {
     if( hi != null )
     {
@@ -287,7 +359,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       if( description != null && description.contains( "can be replaced with" ) ||
           description != null && description.contains( "可被替换为" ) )
       {
-        PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
+        PsiElement firstElem = ctx.getFirstElem();
         while( !(firstElem instanceof PsiBinaryExpressionImpl)  )
         {
           if( firstElem == null )
@@ -306,7 +378,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   // Filter warning messages like "1 Xxx can be replaced with Xxx" where '1 Xxx' is a binding expression
-  private boolean filterCastingStructuralInterfaceWarning( HighlightInfo hi, PsiFile file )
+  private boolean filterCastingStructuralInterfaceWarning( HighlightInfo hi, FilterContext ctx )
   {
     if( hi != null )
     {
@@ -315,7 +387,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
         (description.endsWith( "will produce 'ClassCastException' for any non-null value" ) ||
          description.endsWith( "会为任意非 null 值生成 'ClassCastException'" )) )
       {
-        PsiTypeElement typeElem = findTypeElement( file.findElementAt( hi.getStartOffset() ) );
+        PsiTypeElement typeElem = findTypeElement( ctx.getFirstElem() );
         return isStructuralType( typeElem );
       }
     }
@@ -394,9 +466,9 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   private boolean filterArrayTypeExpected( HighlightInfo hi, PsiElement elem, PsiElement firstElem )
   {
     PsiArrayAccessExpressionImpl arrayAccess;
-    return (arrayAccess = getArrayAccessExpression( elem )) != null &&
-      (hi.getDescription().startsWith( "Array type expected" ) ||
-       hi.getDescription().startsWith( "应为数组类型" )) &&
+    return (hi.getDescription().startsWith( "Array type expected" ) ||
+            hi.getDescription().startsWith( "应为数组类型" )) &&
+      (arrayAccess = getArrayAccessExpression( elem )) != null &&
       arrayAccess.getIndexExpression() != null &&
       ManJavaResolveCache.getBinaryType( ManJavaResolveCache.INDEXED_GET,
         arrayAccess.getArrayExpression().getType(), arrayAccess.getIndexExpression().getType(), arrayAccess ) != null;
@@ -419,6 +491,12 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
 
   private boolean filterVariableExpected( HighlightInfo hi, PsiElement elem, PsiElement firstElem )
   {
+    if( !hi.getDescription().startsWith( "Variable expected" ) &&
+        !hi.getDescription().startsWith( "应为变量" ) )
+    {
+      return false;
+    }
+
     PsiArrayAccessExpressionImpl arrayAccess = null;
     for( PsiElement csr = getArrayAccessExpression( elem ); csr instanceof PsiArrayAccessExpressionImpl; csr = csr.getParent() )
     {
@@ -426,13 +504,11 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       arrayAccess = (PsiArrayAccessExpressionImpl)csr;
     }
     return arrayAccess != null &&
-      (hi.getDescription().startsWith( "Variable expected" ) ||
-       hi.getDescription().startsWith( "应为变量" )) &&
       arrayAccess.getIndexExpression() != null &&
       ManJavaResolveCache.getBinaryType( ManJavaResolveCache.INDEXED_SET,
         arrayAccess.getArrayExpression().getType(), arrayAccess.getIndexExpression().getType(), arrayAccess ) != null;
   }
-  private boolean filterArrayIndexIsOutOfBounds( HighlightInfo hi, PsiFile file )
+  private boolean filterArrayIndexIsOutOfBounds( HighlightInfo hi, FilterContext ctx )
   {
     String description = hi.getDescription();
     if( description == null ||
@@ -442,7 +518,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return false;
     }
 
-    PsiArrayAccessExpressionImpl arrayAccess = getArrayAccessExpression( file.findElementAt( hi.getStartOffset() ) );
+    PsiArrayAccessExpressionImpl arrayAccess = getArrayAccessExpression( ctx.getFirstElem() );
     if( arrayAccess == null )
     {
       return false;
@@ -462,23 +538,17 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       hi.getDescription().contains( manifold.rt.api.anno.any.class.getTypeName() );
   }
 
-  private boolean filterUpdatedButNeverQueried( HighlightInfo hi, PsiFile file )
+  private boolean filterUpdatedButNeverQueried( HighlightInfo hi, FilterContext ctx )
   {
     // for use with string templates when variable is referenced in the string
 
-    PsiElement elem = file.findElementAt( hi.getStartOffset() );
-    if( elem == null )
-    {
-      return false;
-    }
-
     if( (hi.getDescription().contains( "updated, but never queried" ) || hi.getDescription().contains( "更新，但从未被查询" )) ||
 
         (hi.getDescription().contains( "changed" ) && hi.getDescription().contains( "is never used" )) || //todo: chinese
 
         (hi.getDescription().startsWith( "The value ") && hi.getDescription().endsWith( "is never used")) ) //todo: chinese
     {
-      elem = resolveRef( elem ); // mainly for "is never used" cases
+      PsiElement elem = resolveRef( ctx.getFirstElem() ); // mainly for "is never used" cases
       if( elem == null )
       {
         return false;
@@ -512,9 +582,9 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   {
     // filter method override "incompatible return type" error involving 'auto'
 
-    return elem.getText().equals( ManClassUtil.getShortClassName( ManAttr.AUTO_TYPE ) ) &&
-      (hi.getDescription().contains( "incompatible return type" ) ||
-       hi.getDescription().contains( "返回类型不兼容" ));
+    return (hi.getDescription().contains( "incompatible return type" ) ||
+            hi.getDescription().contains( "返回类型不兼容" )) &&
+      elem.getText().equals( ManClassUtil.getShortClassName( ManAttr.AUTO_TYPE ) );
   }
 
   private boolean filterInnerClassReferenceError( HighlightInfo hi, PsiElement elem, PsiElement firstElem )
@@ -1016,4 +1086,59 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     }
     return (PsiMethodCallExpression)csr;
   }
+
+  public enum Route
+  {
+    ComparedUsingEquals,
+    CanBeReplacedWith,
+    CastingStructuralInterface,
+    ArrayIndexIsOutOfBounds,
+    TemplateUnnecessarySemicolon,
+    CallToToStringOnArray,
+    UpdatedButNeverQueried,
+    UnhandledCheckedExceptions,
+    AmbiguousMethods,
+    IllegalEscapedCharDollars,
+    CannotAssignToFinalIfJailbreak,
+    UnclosedComment,
+    OperatorCannotBeApplied,
+    IncDecExprCannotBeApplied,
+    IncompatibleTypesWithCompoundAssignment,
+    OperatorCannotBeAppliedToWithCompoundAssignment,
+    ArrayTypeExpected,
+    VariableExpected,
+    AnyAnnoTypeError,
+    IncompatibleReturnType,
+    ForeachExpressionErrors,
+    InnerClassReferenceError,
+    UsageOfApiNewerThanError,
+    InterfaceError
+  }
+
+  /**
+   * State shared between the filters for a single highlight so the element at the highlight's offset is found once
+   */
+  private static class FilterContext
+  {
+    private final HighlightInfo _hi;
+    private final PsiFile _file;
+    private PsiElement _firstElem;
+    private boolean _firstElemFound;
+
+    FilterContext( HighlightInfo hi, PsiFile file )
+    {
+      _hi = hi;
+      _file = file;
+    }
+
+    PsiElement getFirstElem()
+    {
+      if( !_firstElemFound )
+      {
+        _firstElem = _file.findElementAt( _hi.getStartOffset() );
+        _firstElemFound = true;
+      }
+      return _firstElem;
+    }
+  }
 }
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.psi.PsiElement;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A check performed by {@link ManifoldJavaAnnotator}. A handler is only called for elements that are instances of one
+ * of its {@link #getElementTypes()}.
+ */
+interface ManJavaAnnotationHandler
+{
+  /**
+   * @return The PSI element types this handler annotates
+   */
+  List<Class<? extends PsiElement>> getElementTypes();
+
+  void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context );
+}
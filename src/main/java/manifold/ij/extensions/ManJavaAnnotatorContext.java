@@ -0,0 +1,114 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import manifold.util.concurrent.LocklessLazyVar;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * State shared by the {@link ManJavaAnnotationHandler}s for all the elements of a Java file, computed once per file
+ * modification instead of once per element and handler.
+ */
+class ManJavaAnnotatorContext
+{
+  static final Key<CachedValue<Set<Module>>> KEY_VISIBLE_MODULES = Key.create( "KEY_VISIBLE_MODULES" );
+
+  private final PsiFile _file;
+  private final ManModule _module;
+  private final LocklessLazyVar<PsiClass> _extensionClass;
+
+  static ManJavaAnnotatorContext get( @NotNull PsiFile file )
+  {
+    return CachedValuesManager.getCachedValue( file, () -> CachedValueProvider.Result.create(
+      new ManJavaAnnotatorContext( file ), file, ProjectRootManager.getInstance( file.getProject() ) ) );
+  }
+
+  private ManJavaAnnotatorContext( PsiFile file )
+  {
+    _file = file;
+    _module = ManProject.getModule( file );
+    _extensionClass = LocklessLazyVar.make( () -> ExtensionClassAnnotator.findExtensionClass( file ) );
+  }
+
+  /**
+   * @return The file's module, null if the file is not in a module e.g., a library source file
+   */
+  ManModule getModule()
+  {
+    return _module;
+  }
+
+  /**
+   * @return True if the content of {@code module} is visible from the file's module, the answer is a lookup in the set
+   * of visible modules, which is computed once per module and roots change
+   */
+  boolean isModuleVisible( @NotNull Module module )
+  {
+    Module ijModule = _module == null ? null : _module.getIjModule();
+    return ijModule != null && getVisibleModules( ijModule ).contains( module );
+  }
+
+  private static Set<Module> getVisibleModules( @NotNull Module ijModule )
+  {
+    CachedValuesManager manager = CachedValuesManager.getManager( ijModule.getProject() );
+    return manager.getCachedValue( ijModule, KEY_VISIBLE_MODULES, () -> {
+      GlobalSearchScope scope = GlobalSearchScope.moduleWithDependenciesAndLibrariesScope( ijModule );
+      Set<Module> visible = new HashSet<>();
+      for( Module module: ModuleManager.getInstance( ijModule.getProject() ).getModules() )
+      {
+        if( scope.isSearchInModuleContent( module ) )
+        {
+          visible.add( module );
+        }
+      }
+      return CachedValueProvider.Result.create( Collections.unmodifiableSet( visible ),
+        ProjectRootManager.getInstance( ijModule.getProject() ) );
+    }, false );
+  }
+
+  boolean isDumb()
+  {
+    return DumbService.getInstance( _file.getProject() ).isDumb();
+  }
+
+  /**
+   * @return The {@code @Extension} class declared in the file, or null if the file is not an extension class
+   */
+  PsiClass getExtensionClass()
+  {
+    return _extensionClass.get();
+  }
+}
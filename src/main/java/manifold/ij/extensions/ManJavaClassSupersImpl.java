@@ -19,7 +19,10 @@
 
 package manifold.ij.extensions;
 
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.RecursionGuard;
+import com.intellij.openapi.util.RecursionManager;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.JavaClassSupersImpl;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -28,15 +31,22 @@ import manifold.ij.util.ManPsiUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Override IJ's JavaClassSupersImpl to support structurally assignable types via @Structural
  */
 public class ManJavaClassSupersImpl extends JavaClassSupers
 {
+  static final Key<CachedValue<Map<PsiClass, Boolean>>> KEY_STRUCTURAL_ASSIGNABILITY =
+    Key.create( "KEY_STRUCTURAL_ASSIGNABILITY" );
+
   private final JavaClassSupersImpl _delegate;
 
   public ManJavaClassSupersImpl()
@@ -56,57 +66,76 @@ public class ManJavaClassSupersImpl extends JavaClassSupers
     return superClassSubstitutor;
   }
 
-  private static final ThreadLocal<Set<Pair<PsiClass,PsiClass>>> _visited = ThreadLocal.withInitial( () -> new LinkedHashSet<>() );
   public static boolean isStructurallyAssignable( @NotNull PsiClass superClass, @NotNull PsiClass derivedClass )
   {
-    Pair<PsiClass, PsiClass> pair = new Pair<>( superClass, derivedClass );
-    if( _visited.get().contains( pair ) )
+    if( !superClass.isInterface() )
     {
       return false;
     }
-    _visited.get().add( pair );
 
-    try
+    Map<PsiClass, Boolean> results = CachedValuesManager.getCachedValue( derivedClass, KEY_STRUCTURAL_ASSIGNABILITY, () ->
+      CachedValueProvider.Result.create( new ConcurrentHashMap<>(), PsiModificationTracker.MODIFICATION_COUNT ) );
+    Boolean result = results.get( superClass );
+    if( result != null )
     {
-      if( !superClass.isInterface() )
-      {
-        return false;
-      }
+      return result;
+    }
+
+    // a cycle returns false, results computed in its presence are not cached
+    RecursionGuard.StackStamp stamp = RecursionManager.markStack();
+    result = RecursionManager.doPreventingRecursion( new Pair<>( superClass, derivedClass ), false,
+      () -> computeStructurallyAssignable( superClass, derivedClass ) );
+    if( result == null )
+    {
+      return false;
+    }
+    if( stamp.mayCacheNow() )
+    {
+      results.put( superClass, result );
+    }
+    return result;
+  }
 
-      // check for structural assignment, return empty substitutor to affirm, otherwise null
-      outer:
-      for( PsiMethod m : superClass.getAllMethods() )
+  private static boolean computeStructurallyAssignable( @NotNull PsiClass superClass, @NotNull PsiClass derivedClass )
+  {
+    Map<String, List<PsiMethod>> derivedMethods = getMethodsByName( derivedClass );
+
+    // check for structural assignment, return empty substitutor to affirm, otherwise null
+    outer:
+    for( PsiMethod m : superClass.getAllMethods() )
+    {
+      if( m.hasModifierProperty( PsiModifier.PUBLIC ) &&
+        m.hasModifierProperty( PsiModifier.ABSTRACT ) &&
+        !m.hasModifierProperty( PsiModifier.STATIC ) &&
+        !m.hasModifierProperty( PsiModifier.DEFAULT ) )
       {
-        if( m.hasModifierProperty( PsiModifier.PUBLIC ) &&
-          m.hasModifierProperty( PsiModifier.ABSTRACT ) &&
-          !m.hasModifierProperty( PsiModifier.STATIC ) &&
-          !m.hasModifierProperty( PsiModifier.DEFAULT ) )
+        for( PsiMethod dm : derivedMethods.getOrDefault( m.getName(), Collections.emptyList() ) )
         {
-          for( PsiMethod dm : derivedClass.getAllMethods() )
+          if( isStructurallyAssignable( dm, m ) )
           {
-            if( dm.getName().equals( m.getName() ) &&
-              m.hasModifierProperty( PsiModifier.PUBLIC ) &&
-              !m.hasModifierProperty( PsiModifier.STATIC ) )
-            {
-              if( dm.getName().equals( m.getName() ) )
-              {
-                if( isStructurallyAssignable( dm, m ) )
-                {
-                  continue outer;
-                }
-              }
-            }
+            continue outer;
           }
-          // no structural match found for method
-          return false;
         }
+        // no structural match found for method
+        return false;
       }
-      return true;
-    }
-    finally
-    {
-      _visited.get().remove( pair );
     }
+    return true;
+  }
+
+  /**
+   * @return All of the class's methods, including inherited ones, by name
+   */
+  private static Map<String, List<PsiMethod>> getMethodsByName( @NotNull PsiClass psiClass )
+  {
+    return CachedValuesManager.getCachedValue( psiClass, () -> {
+      Map<String, List<PsiMethod>> byName = new HashMap<>();
+      for( PsiMethod method : psiClass.getAllMethods() )
+      {
+        byName.computeIfAbsent( method.getName(), k -> new ArrayList<>() ).add( method );
+      }
+      return CachedValueProvider.Result.create( byName, PsiModificationTracker.MODIFICATION_COUNT );
+    } );
   }
 
   public static boolean isStructurallyAssignable( @NotNull PsiMethod from, @NotNull PsiMethod to )
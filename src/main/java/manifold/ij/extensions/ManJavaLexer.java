@@ -66,6 +66,7 @@ public class ManJavaLexer extends LexerBase
 
   private final com.intellij.lang.java.lexer.@Jailbreak _JavaLexer _flexLexer;
   private final boolean myStringTemplates;
+  private final LanguageLevel _level;
   private final IntStack myStateStack = new IntArrayList(1);
   private CharSequence _buffer;
   private char @Nullable[] _bufferArray;
@@ -111,12 +112,19 @@ public class ManJavaLexer extends LexerBase
   {
     _flexLexer = new com.intellij.lang.java.lexer.@Jailbreak _JavaLexer( level );
     myStringTemplates = level.isAtLeast( LanguageLevel.JDK_21_PREVIEW );
+    _level = level;
   }
 
   public ManJavaLexer( @Jailbreak JavaLexer lexer, @NotNull LanguageLevel level )
   {
     _flexLexer = lexer.myFlexLexer;
     myStringTemplates = level.isAtLeast( LanguageLevel.JDK_21_PREVIEW );
+    _level = level;
+  }
+
+  LanguageLevel getLanguageLevel()
+  {
+    return _level;
   }
 
   public void setChameleon( ASTNode chameleon )
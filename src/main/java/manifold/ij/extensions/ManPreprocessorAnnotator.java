@@ -70,14 +70,15 @@ public class ManPreprocessorAnnotator extends ExternalAnnotator<PsiFile, ManPrep
   @Override
   public PsiFile collectInformation( @NotNull PsiFile file )
   {
-    return file;
+    // skip files without directives, which is most of them
+    return ManPreprocessorDirectiveIndex.mayHaveDirectives( file ) ? file : null;
   }
 
   @Nullable
   @Override
   public PsiFile collectInformation( @NotNull PsiFile file, @NotNull Editor editor, boolean hasErrors )
   {
-    return file;
+    return collectInformation( file );
   }
 
   @Nullable
@@ -0,0 +1,156 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.BooleanDataDescriptor;
+import com.intellij.util.io.DataExternalizer;
+import java.util.Map;
+
+import manifold.preprocessor.TokenType;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. A one bit per file index telling whether a Java file has any preprocessor directives. Most
+ * files don't, and for those the preprocessor's annotator work can be skipped entirely. The parser can't query the
+ * index, it scans the text with {@link #containsDirective(CharSequence)} instead.
+ */
+public class ManPreprocessorDirectiveIndex extends SingleEntryFileBasedIndexExtension<Boolean>
+{
+  public static final ID<Integer, Boolean> NAME = ID.create( "manifold.preprocessor.directives" );
+
+  private static final String[] DIRECTIVES = {
+    TokenType.If.getDirective(), TokenType.Elif.getDirective(), TokenType.Else.getDirective(),
+    TokenType.Endif.getDirective(), TokenType.Define.getDirective(), TokenType.Undef.getDirective(),
+    TokenType.Error.getDirective(), TokenType.Warning.getDirective()};
+
+  @NotNull
+  @Override
+  public ID<Integer, Boolean> getName()
+  {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public SingleEntryIndexer<Boolean> getIndexer()
+  {
+    return new SingleEntryIndexer<>( false )
+    {
+      @Override
+      protected Boolean computeValue( @NotNull FileContent inputData )
+      {
+        return containsDirective( inputData.getContentAsText() );
+      }
+    };
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<Boolean> getValueExternalizer()
+  {
+    return BooleanDataDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 1;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  /**
+   * Note this errs on the side of having directives. The answer is only taken from the index if the file is indexed,
+   * indexing is not in progress, and the file is not modified in an editor. Otherwise, this returns true and the file
+   * is processed normally.
+   *
+   * @return False if the file is known to have no preprocessor directives, otherwise true
+   */
+  public static boolean mayHaveDirectives( @NotNull PsiFile psiFile )
+  {
+    VirtualFile vfile = psiFile.getVirtualFile();
+    if( vfile == null || vfile instanceof LightVirtualFile ||
+      psiFile.getUserData( IndexingDataKeys.FILE_TEXT_CONTENT_KEY ) != null )
+    {
+      // not indexed, or being indexed
+      return true;
+    }
+    return mayHaveDirectives( psiFile.getProject(), vfile );
+  }
+
+  public static boolean mayHaveDirectives( @NotNull Project project, @NotNull VirtualFile vfile )
+  {
+    if( DumbService.getInstance( project ).isDumb() ||
+      FileDocumentManager.getInstance().isFileModified( vfile ) )
+    {
+      // the index is not available or does not reflect unsaved changes
+      return true;
+    }
+
+    try
+    {
+      Map<Integer, Boolean> data = FileBasedIndex.getInstance().getFileData( NAME, vfile, project );
+      return data.isEmpty() || data.values().iterator().next();
+    }
+    catch( IndexNotReadyException e )
+    {
+      return true;
+    }
+  }
+
+  /**
+   * @return True if {@code text} has a {@code #} directive, directives in comments and string literals count too
+   */
+  static boolean containsDirective( CharSequence text )
+  {
+    int length = text.length();
+    for( int i = 0; i < length; i++ )
+    {
+      if( text.charAt( i ) == '#' && (i == 0 || !Character.isJavaIdentifierPart( text.charAt( i - 1 ) )) )
+      {
+        for( String directive: DIRECTIVES )
+        {
+          int end = i + 1 + directive.length();
+          if( end <= length &&
+            text.subSequence( i + 1, end ).toString().equals( directive ) &&
+            (end == length || !Character.isJavaIdentifierPart( text.charAt( end ) )) )
+          {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+}
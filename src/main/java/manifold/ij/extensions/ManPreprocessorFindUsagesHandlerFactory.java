@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.find.findUsages.FindUsagesHandler;
+import com.intellij.find.findUsages.FindUsagesHandlerFactory;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * For the Preprocessor. Enables Find Usages on a symbol in a directive, the usages are found with
+ * {@link ManPreprocessorSymbolSearcher}.
+ */
+public class ManPreprocessorFindUsagesHandlerFactory extends FindUsagesHandlerFactory
+{
+  @Override
+  public boolean canFindUsages( @NotNull PsiElement element )
+  {
+    return element instanceof ManPreprocessorSymbol;
+  }
+
+  @Nullable
+  @Override
+  public FindUsagesHandler createFindUsagesHandler( @NotNull PsiElement element, boolean forHighlightUsages )
+  {
+    return element instanceof ManPreprocessorSymbol ? new FindUsagesHandler( element ) {} : null;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.patterns.PlatformPatterns;
+import com.intellij.psi.*;
+import com.intellij.util.ProcessingContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. Directives are comments to the Java parser, this contributes a reference for each symbol in a
+ * directive, so the symbol can be the target of Find Usages.
+ */
+public class ManPreprocessorReferenceContributor extends PsiReferenceContributor
+{
+  @Override
+  public void registerReferenceProviders( @NotNull PsiReferenceRegistrar registrar )
+  {
+    registrar.registerReferenceProvider( PlatformPatterns.psiComment(), new PsiReferenceProvider()
+    {
+      @Override
+      public PsiReference @NotNull [] getReferencesByElement( @NotNull PsiElement element, @NotNull ProcessingContext context )
+      {
+        return getSymbolReferences( (PsiComment)element );
+      }
+    } );
+  }
+
+  static PsiReference[] getSymbolReferences( PsiComment comment )
+  {
+    String text = comment.getText();
+    if( text.isEmpty() || text.charAt( 0 ) != '#' )
+    {
+      // not a directive
+      return PsiReference.EMPTY_ARRAY;
+    }
+
+    ManModule module = ManProject.getModule( comment );
+    if( module == null || !module.isPreprocessorEnabled() )
+    {
+      return PsiReference.EMPTY_ARRAY;
+    }
+
+    List<PsiReference> refs = new ArrayList<>();
+    for( Map.Entry<String, List<Integer>> entry: ManPreprocessorSymbolIndex.collectSymbols( text ).entrySet() )
+    {
+      String symbol = entry.getKey();
+      for( int offset: entry.getValue() )
+      {
+        refs.add( new SymbolReference( comment, new TextRange( offset, offset + symbol.length() ), symbol ) );
+      }
+    }
+    return refs.toArray( PsiReference.EMPTY_ARRAY );
+  }
+
+  static class SymbolReference extends PsiReferenceBase<PsiComment>
+  {
+    private final String _symbol;
+
+    SymbolReference( PsiComment comment, TextRange range, String symbol )
+    {
+      super( comment, range, true );
+      _symbol = symbol;
+    }
+
+    @Override
+    public PsiElement resolve()
+    {
+      return new ManPreprocessorSymbol( getElement().getManager(), _symbol );
+    }
+
+    @NotNull
+    @Override
+    public String getCanonicalText()
+    {
+      return _symbol;
+    }
+
+    @Override
+    public boolean isReferenceTo( @NotNull PsiElement element )
+    {
+      return element instanceof ManPreprocessorSymbol &&
+        _symbol.equals( ((ManPreprocessorSymbol)element).getSymbolName() );
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.impl.light.LightElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. The target of a reference to a symbol in a preprocessor directive, e.g., {@code DEBUG} in
+ * {@code #if DEBUG}. A symbol has no single declaration, it may be defined with {@code #define}, in build.properties,
+ * etc., so all references to the same symbol name resolve to equal instances of this element.
+ * <p/>
+ * Note this is intentionally not a {@link com.intellij.psi.PsiNamedElement}, references are found exclusively with
+ * {@link ManPreprocessorSymbolSearcher}, which uses {@link ManPreprocessorSymbolIndex}, instead of a word search.
+ */
+public class ManPreprocessorSymbol extends LightElement
+{
+  private final String _symbol;
+
+  public ManPreprocessorSymbol( @NotNull PsiManager manager, @NotNull String symbol )
+  {
+    super( manager, JavaLanguage.INSTANCE );
+    _symbol = symbol;
+  }
+
+  public String getSymbolName()
+  {
+    return _symbol;
+  }
+
+  @Override
+  public String getText()
+  {
+    return _symbol;
+  }
+
+  @NotNull
+  @Override
+  public SearchScope getUseScope()
+  {
+    // directives are only meaningful in project sources
+    return GlobalSearchScope.projectScope( getProject() );
+  }
+
+  @Override
+  public boolean equals( Object o )
+  {
+    if( this == o )
+    {
+      return true;
+    }
+    if( !(o instanceof ManPreprocessorSymbol) )
+    {
+      return false;
+    }
+    ManPreprocessorSymbol that = (ManPreprocessorSymbol)o;
+    return _symbol.equals( that._symbol ) && getManager() == that.getManager();
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return _symbol.hashCode();
+  }
+
+  @Override
+  public String toString()
+  {
+    return "PreprocessorSymbol:" + _symbol;
+  }
+}
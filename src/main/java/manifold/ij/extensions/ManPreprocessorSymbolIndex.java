@@ -0,0 +1,338 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+import org.jetbrains.annotations.NotNull;
+
+import static manifold.preprocessor.TokenType.*;
+
+/**
+ * For the Preprocessor. Indexes Java files by the preprocessor symbols they reference in {@code #if} and {@code #elif}
+ * expressions and in {@code #define} and {@code #undef} directives. Each symbol maps to the offsets of its occurrences
+ * in the file.
+ * <p/>
+ * This is what lets a change to build.properties or to an Android BuildConfig reparse exactly the files affected by
+ * the change, including files that are not open.
+ */
+public class ManPreprocessorSymbolIndex extends FileBasedIndexExtension<String, List<Integer>>
+{
+  public static final ID<String, List<Integer>> NAME = ID.create( "manifold.preprocessor.symbols" );
+
+  private static final String[] EXPRESSION_DIRECTIVES = {If.getDirective(), Elif.getDirective()};
+  private static final String[] DEFINITION_DIRECTIVES = {Define.getDirective(), Undef.getDirective()};
+
+  @NotNull
+  @Override
+  public ID<String, List<Integer>> getName()
+  {
+    return NAME;
+  }
+
+  @NotNull
+  @Override
+  public DataIndexer<String, List<Integer>, FileContent> getIndexer()
+  {
+    return fileContent -> collectSymbols( fileContent.getContentAsText() );
+  }
+
+  @NotNull
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor()
+  {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @NotNull
+  @Override
+  public DataExternalizer<List<Integer>> getValueExternalizer()
+  {
+    return new DataExternalizer<>()
+    {
+      @Override
+      public void save( @NotNull DataOutput out, List<Integer> offsets ) throws IOException
+      {
+        DataInputOutputUtil.writeINT( out, offsets.size() );
+        for( int offset: offsets )
+        {
+          DataInputOutputUtil.writeINT( out, offset );
+        }
+      }
+
+      @Override
+      public List<Integer> read( @NotNull DataInput in ) throws IOException
+      {
+        int size = DataInputOutputUtil.readINT( in );
+        List<Integer> offsets = new ArrayList<>( size );
+        for( int i = 0; i < size; i++ )
+        {
+          offsets.add( DataInputOutputUtil.readINT( in ) );
+        }
+        return offsets;
+      }
+    };
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 1;
+  }
+
+  @NotNull
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  @Override
+  public boolean dependsOnFileContent()
+  {
+    return true;
+  }
+
+  /**
+   * @return The files in {@code scope} that reference any of the {@code symbols} in a preprocessor directive. Note the
+   * index is not available in dumb mode, callers must check.
+   */
+  public static Set<VirtualFile> findFilesUsingSymbols( @NotNull Collection<String> symbols, @NotNull GlobalSearchScope scope )
+  {
+    FileBasedIndex index = FileBasedIndex.getInstance();
+    Set<VirtualFile> files = new LinkedHashSet<>();
+    for( String symbol: symbols )
+    {
+      files.addAll( index.getContainingFiles( NAME, symbol, scope ) );
+    }
+    return files;
+  }
+
+  /**
+   * Feeds {@code processor} the reference to {@code symbol} at each of its occurrences in a preprocessor directive in
+   * {@code scope}. Only the files having the symbol are visited, see {@link ManPreprocessorSymbolSearcher}.
+   *
+   * @return False if {@code processor} stopped the search
+   */
+  public static boolean processSymbolReferences( @NotNull Project project, @NotNull String symbol,
+                                                 @NotNull GlobalSearchScope scope, @NotNull Processor<? super PsiReference> processor )
+  {
+    // collect the occurrences first, don't build PSI while processing index values
+    Map<VirtualFile, List<Integer>> occurrences = new LinkedHashMap<>();
+    FileBasedIndex.getInstance().processValues( NAME, symbol, null,
+      ( file, offsets ) -> {
+        occurrences.computeIfAbsent( file, __ -> new ArrayList<>() ).addAll( offsets );
+        return true;
+      }, scope );
+
+    PsiManager psiManager = PsiManager.getInstance( project );
+    for( Map.Entry<VirtualFile, List<Integer>> entry: occurrences.entrySet() )
+    {
+      PsiFile psiFile = psiManager.findFile( entry.getKey() );
+      if( psiFile == null )
+      {
+        continue;
+      }
+      for( int offset: entry.getValue() )
+      {
+        PsiReference ref = findSymbolReference( psiFile, symbol, offset );
+        if( ref != null && !processor.process( ref ) )
+        {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static PsiReference findSymbolReference( PsiFile psiFile, String symbol, int offset )
+  {
+    // an occurrence in a string literal or in a regular comment has no reference
+    PsiComment comment = PsiTreeUtil.getParentOfType( psiFile.findElementAt( offset ), PsiComment.class, false );
+    if( comment == null )
+    {
+      return null;
+    }
+    int offsetInComment = offset - comment.getTextRange().getStartOffset();
+    for( PsiReference ref: ManPreprocessorReferenceContributor.getSymbolReferences( comment ) )
+    {
+      if( ref.getRangeInElement().getStartOffset() == offsetInComment && symbol.equals( ref.getCanonicalText() ) )
+      {
+        return ref;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the symbols referenced in preprocessor directives. This is a cheap text scan, it does not parse the file.
+   * As a consequence a directive in a comment or a string literal counts too, which is fine for an index used to
+   * decide what to reparse.
+   *
+   * @return A map of symbol name to the offsets of its occurrences in {@code text}
+   */
+  public static Map<String, List<Integer>> collectSymbols( CharSequence text )
+  {
+    Map<String, List<Integer>> symbols = new HashMap<>();
+    int length = text.length();
+    for( int i = 0; i < length; i++ )
+    {
+      if( text.charAt( i ) != '#' || (i > 0 && isSymbolPart( text.charAt( i - 1 ) )) )
+      {
+        continue;
+      }
+
+      String directive;
+      if( (directive = matchDirective( text, i + 1, EXPRESSION_DIRECTIVES )) != null )
+      {
+        // all the symbols in the expression, which ends with the line
+        i = addExpressionSymbols( text, i + 1 + directive.length(), symbols );
+      }
+      else if( (directive = matchDirective( text, i + 1, DEFINITION_DIRECTIVES )) != null )
+      {
+        // just the symbol being defined
+        int start = skipSpaces( text, i + 1 + directive.length() );
+        int end = symbolEnd( text, start );
+        if( end > start )
+        {
+          addSymbol( text, start, end, symbols );
+        }
+        i = end;
+      }
+    }
+    return symbols;
+  }
+
+  private static int addExpressionSymbols( CharSequence text, int offset, Map<String, List<Integer>> symbols )
+  {
+    int length = text.length();
+    int i = offset;
+    while( i < length )
+    {
+      char c = text.charAt( i );
+      if( c == '\n' || c == '\r' )
+      {
+        break;
+      }
+      if( c == '/' && i + 1 < length && text.charAt( i + 1 ) == '/' )
+      {
+        // trailing line comment
+        break;
+      }
+      if( c == '"' )
+      {
+        // skip string literal
+        i = skipStringLiteral( text, i + 1 );
+      }
+      else if( isSymbolStart( c ) )
+      {
+        int end = symbolEnd( text, i );
+        addSymbol( text, i, end, symbols );
+        i = end;
+      }
+      else
+      {
+        i++;
+      }
+    }
+    return i;
+  }
+
+  private static int skipStringLiteral( CharSequence text, int offset )
+  {
+    int i = offset;
+    while( i < text.length() && text.charAt( i ) != '"' && text.charAt( i ) != '\n' )
+    {
+      i++;
+    }
+    return i < text.length() && text.charAt( i ) == '"' ? i + 1 : i;
+  }
+
+  private static void addSymbol( CharSequence text, int start, int end, Map<String, List<Integer>> symbols )
+  {
+    symbols.computeIfAbsent( text.subSequence( start, end ).toString(), k -> new ArrayList<>() ).add( start );
+  }
+
+  private static String matchDirective( CharSequence text, int offset, String[] directives )
+  {
+    for( String directive: directives )
+    {
+      int end = offset + directive.length();
+      if( end <= text.length() &&
+        text.subSequence( offset, end ).toString().equals( directive ) &&
+        (end == text.length() || !isSymbolPart( text.charAt( end ) )) )
+      {
+        return directive;
+      }
+    }
+    return null;
+  }
+
+  private static int skipSpaces( CharSequence text, int offset )
+  {
+    while( offset < text.length() && (text.charAt( offset ) == ' ' || text.charAt( offset ) == '\t') )
+    {
+      offset++;
+    }
+    return offset;
+  }
+
+  private static int symbolEnd( CharSequence text, int offset )
+  {
+    if( offset >= text.length() || !isSymbolStart( text.charAt( offset ) ) )
+    {
+      return offset;
+    }
+    int i = offset + 1;
+    while( i < text.length() && isSymbolPart( text.charAt( i ) ) )
+    {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isSymbolStart( char c )
+  {
+    return Character.isJavaIdentifierStart( c );
+  }
+
+  private static boolean isSymbolPart( char c )
+  {
+    return Character.isJavaIdentifierPart( c ) || c == '.';
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.QueryExecutorBase;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.LocalSearchScope;
+import com.intellij.psi.search.SearchScope;
+import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.util.Processor;
+import manifold.ij.core.ManProject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. Finds references to a {@link ManPreprocessorSymbol} using {@link ManPreprocessorSymbolIndex},
+ * only the files having the symbol in a directive are visited.
+ */
+public class ManPreprocessorSymbolSearcher extends QueryExecutorBase<PsiReference, ReferencesSearch.SearchParameters>
+{
+  public ManPreprocessorSymbolSearcher()
+  {
+    super( true );
+  }
+
+  @Override
+  public void processQuery( @NotNull ReferencesSearch.SearchParameters queryParameters,
+                            @NotNull Processor<? super PsiReference> consumer )
+  {
+    PsiElement target = queryParameters.getElementToSearch();
+    if( !(target instanceof ManPreprocessorSymbol) )
+    {
+      return;
+    }
+
+    Project project = queryParameters.getProject();
+    ManProject manProject = ManProject.manProjectFrom( project );
+    if( manProject == null || !manProject.isPreprocessorEnabledInAnyModules() )
+    {
+      return;
+    }
+
+    if( DumbService.getInstance( project ).isDumb() )
+    {
+      // the index is not available
+      return;
+    }
+
+    SearchScope scope = queryParameters.getEffectiveSearchScope();
+    GlobalSearchScope globalScope = scope instanceof LocalSearchScope
+      ? GlobalSearchScope.filesScope( project, ((LocalSearchScope)scope).getVirtualFiles() )
+      : (GlobalSearchScope)scope;
+    ManPreprocessorSymbolIndex.processSymbolReferences(
+      project, ((ManPreprocessorSymbol)target).getSymbolName(), globalScope, consumer );
+  }
+}
@@ -26,8 +26,10 @@ import com.intellij.lang.jvm.annotation.JvmAnnotationAttributeValue;
 import com.intellij.lang.jvm.annotation.JvmNestedAnnotationValue;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.*;
 import com.intellij.psi.augment.PsiAugmentProvider;
 import com.intellij.psi.impl.compiled.ClsClassImpl;
@@ -45,7 +47,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Consumer;
 
 import static manifold.ij.extensions.PropertyInference.GETTER_TAG;
 import static manifold.ij.extensions.PropertyInference.SETTER_TAG;
@@ -60,6 +61,30 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
 {
   static final Key<CachedValue<List<PsiField>>> KEY_CACHED_PROP_FIELD_AUGMENTS = new Key<>( "KEY_CACHED_PROP_FIELD_AUGMENTS" );
   static final Key<CachedValue<List<PsiMethod>>> KEY_CACHED_PROP_METHOD_AUGMENTS = new Key<>( "KEY_CACHED_PROP_METHOD_AUGMENTS" );
+  private static final Key<CachedValue<Long>> KEY_CACHED_ANCESTRY_HASH = new Key<>( "KEY_CACHED_ANCESTRY_HASH" );
+
+  static
+  {
+    disableStabilityChecks();
+  }
+
+  /**
+   * The stability checker is only enabled in tests, turn it off once instead of on each call.
+   */
+  static void disableStabilityChecks()
+  {
+    try
+    {
+      ReflectUtil.FieldRef doChecks = ReflectUtil.field( "com.intellij.util.CachedValueStabilityChecker", "DO_CHECKS" );
+      if( (boolean)doChecks.getStatic() )
+      {
+        doChecks.setStatic( false );
+      }
+    }
+    catch( Throwable ignore )
+    {
+    }
+  }
 
   @SuppressWarnings( "deprecation" )
   @NotNull
@@ -71,6 +96,11 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
   @NotNull
   public <E extends PsiElement> List<E> getAugments( @NotNull PsiElement element, @NotNull Class<E> cls, String nameHint )
   {
+    if( ApplicationManager.getApplication().isReadAccessAllowed() )
+    {
+      // the common case, avoid the lambda and the read action
+      return _getAugments( element, cls );
+    }
     return ApplicationManager.getApplication().runReadAction( (Computable<List<E>>)() -> _getAugments( element, cls ) );
   }
 
@@ -97,6 +127,17 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
 
   private <E extends PsiElement> List<E> _getAugments( PsiElement element, Class<E> cls )
   {
+    if( !(element instanceof PsiExtensibleClass) )
+    {
+      return Collections.emptyList();
+    }
+
+    boolean methods = PsiMethod.class.isAssignableFrom( cls );
+    if( !methods && !PsiField.class.isAssignableFrom( cls ) )
+    {
+      return Collections.emptyList();
+    }
+
     // Module is assigned to user-data via ManTypeFinder, which loads the psiClass (element)
     if( DumbService.getInstance( element.getProject() ).isDumb() )
     {
@@ -104,7 +145,7 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
       return Collections.emptyList();
     }
 
-    if( !(element instanceof PsiExtensibleClass) || !element.isValid() )
+    if( !element.isValid() )
     {
       return Collections.emptyList();
     }
@@ -146,67 +187,68 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
 //    return new ArrayList<>( (Collection<? extends E>)augFeatures.values() );
 
 // Cached:
-    ReflectUtil.FieldRef DO_CHECKS = ReflectUtil.field( "com.intellij.util.CachedValueStabilityChecker", "DO_CHECKS" );
-    try { if( (boolean)DO_CHECKS.getStatic() ) DO_CHECKS.setStatic( false ); } catch( Throwable ignore ){}
-    if( PsiMethod.class.isAssignableFrom( cls ) )
-    {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PROP_METHOD_AUGMENTS,
-        augFeatures -> addMethods( psiClass, augFeatures ) );
-    }
-    else if( PsiField.class.isAssignableFrom( cls ) )
-    {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PROP_FIELD_AUGMENTS, augFeatures -> {
-        recreateNonbackingPropertyFields( psiClass, augFeatures );
-        inferPropertyFieldsFromAccessors( psiClass, augFeatures );
-      } );
-    }
-    return Collections.emptyList();
+    //noinspection unchecked
+    return getCachedAugments( psiClass,
+      methods ? (Key)KEY_CACHED_PROP_METHOD_AUGMENTS : (Key)KEY_CACHED_PROP_FIELD_AUGMENTS, methods );
   }
 
-  private <E extends PsiElement> List<E> getCachedAugments( PsiExtensibleClass psiClass,
-                                                            Key<CachedValue<List<E>>> key,
-                                                            Consumer<LinkedHashMap<String, PsiMember>> augmenter )
+  private static <E extends PsiElement> List<E> getCachedAugments( PsiExtensibleClass psiClass,
+                                                                   Key<CachedValue<List<E>>> key, boolean methods )
   {
-    return CachedValuesManager.getCachedValue( psiClass, key, new MyCachedValueProvider<E>( psiClass, augmenter ) );
+    return CachedValuesManager.getCachedValue( psiClass, key, new MyCachedValueProvider<>( psiClass, methods ) );
   }
 
+  /**
+   * Captures only the class and which augments to compute, no pointers or lambdas are created per call.
+   */
   private static class MyCachedValueProvider<X extends PsiElement> implements CachedValueProvider<List<X>>
   {
-    private final SmartPsiElementPointer<PsiExtensibleClass> _psiClassPointer;
-    private final Consumer<LinkedHashMap<String, PsiMember>> _augmenter;
+    private final PsiExtensibleClass _psiClass;
+    private final boolean _methods;
 
-    public MyCachedValueProvider( PsiExtensibleClass psiClass, Consumer<LinkedHashMap<String, PsiMember>> augmenter )
+    MyCachedValueProvider( PsiExtensibleClass psiClass, boolean methods )
     {
-      _psiClassPointer = SmartPointerManager.createPointer( psiClass );
-      _augmenter = augmenter;
+      _psiClass = psiClass;
+      _methods = methods;
     }
 
     @Override
     public @Nullable Result<List<X>> compute()
     {
-      LinkedHashMap<String, PsiMember> augFeatures = new LinkedHashMap<>();
-      _augmenter.accept( augFeatures );
-      Set<PsiElement> hierarchy = new LinkedHashSet<>();
-      PsiExtensibleClass psiClass = _psiClassPointer.getElement();
-      if( psiClass == null )
+      if( !_psiClass.isValid() )
       {
         return new CachedValueProvider.Result<>( Collections.emptyList() );
       }
 
-      hierarchy.add( psiClass );
-      hierarchy.addAll( Arrays.asList( psiClass.getSupers() ) );
-      addFilesOfNavigationElements( augFeatures, hierarchy );
+      LinkedHashMap<String, PsiMember> augFeatures = new LinkedHashMap<>();
+      if( _methods )
+      {
+        addMethods( _psiClass, augFeatures );
+      }
+      else
+      {
+        recreateNonbackingPropertyFields( _psiClass, augFeatures );
+        inferPropertyFieldsFromAccessors( _psiClass, augFeatures );
+      }
+
+      Set<Object> dependencies = new LinkedHashSet<>();
+      dependencies.add( _psiClass );
+      // library classes change only when the project's libraries change
+      dependencies.add( ProjectRootManager.getInstance( _psiClass.getProject() ) );
+      if( !(_psiClass instanceof ClsClassImpl) )
+      {
+        dependencies.add( new AncestryTracker( _psiClass ) );
+      }
+      addFilesOfNavigationElements( augFeatures, dependencies );
       //noinspection unchecked
       return new CachedValueProvider.Result<>(
-        new ArrayList<X>( (Collection<X>)augFeatures.values() ), hierarchy.toArray() );
+        new ArrayList<X>( (Collection<X>)augFeatures.values() ), dependencies.toArray() );
     }
 
     @Override
     public int hashCode()
     {
-      return Objects.hashCode( _psiClassPointer.getElement() );
+      return Objects.hash( _psiClass, _methods );
     }
 
     @Override
@@ -214,17 +256,70 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
     {
       if( obj instanceof MyCachedValueProvider<?> )
       {
-        return Objects.equals( ((MyCachedValueProvider<?>)obj)._psiClassPointer.getElement(), _psiClassPointer.getElement() );
+        MyCachedValueProvider<?> that = (MyCachedValueProvider<?>)obj;
+        return _psiClass == that._psiClass && _methods == that._methods;
       }
       return false;
     }
   }
 
+  /**
+   * Tracks the declarations in a class's source ancestry that property inference observes, see
+   * {@link PropertyInference#getDeclaredAccessorsHash(PsiClass)}. Unlike depending on the ancestors themselves, editing
+   * a method body in a base class does not invalidate the properties of all its subclasses. Library ancestors are
+   * covered by the project roots.
+   */
+  private static class AncestryTracker implements ModificationTracker
+  {
+    private final PsiClass _psiClass;
+
+    AncestryTracker( PsiClass psiClass )
+    {
+      _psiClass = psiClass;
+    }
+
+    @Override
+    public long getModificationCount()
+    {
+      return _psiClass.isValid() ? getAncestryHash( _psiClass ) : -1;
+    }
+  }
+
+  /**
+   * The combined declared accessors hash of a class's source ancestors. The ancestry is walked again only after the
+   * class's file or an ancestor's file changes, otherwise checking the freshness of the class's augments is a single
+   * cached value lookup.
+   */
+  private static long getAncestryHash( PsiClass psiClass )
+  {
+    return CachedValuesManager.getCachedValue( psiClass, KEY_CACHED_ANCESTRY_HASH, () -> {
+      long hash = 0;
+      Set<Object> dependencies = new LinkedHashSet<>();
+      dependencies.add( psiClass );
+      Set<PsiClass> visited = new HashSet<>();
+      visited.add( psiClass );
+      Deque<PsiClass> ancestry = new ArrayDeque<>( Arrays.asList( psiClass.getSupers() ) );
+      while( !ancestry.isEmpty() )
+      {
+        PsiClass ancestor = ancestry.pop();
+        if( ancestor instanceof ClsClassImpl || !visited.add( ancestor ) )
+        {
+          continue;
+        }
+        hash = 31 * hash + PropertyInference.getDeclaredAccessorsHash( ancestor );
+        PsiFile file = ancestor.getContainingFile();
+        dependencies.add( file == null ? ancestor : file );
+        ancestry.addAll( Arrays.asList( ancestor.getSupers() ) );
+      }
+      return CachedValueProvider.Result.create( hash, dependencies.toArray() );
+    } );
+  }
+
   /**
    * Add the containing PsiFiles for the properties. This is necessary when inferring properties for a projected class
    * from a type manifold; changes to the corresponding resource files should invalidate the cache.
    */
-  private static void addFilesOfNavigationElements( LinkedHashMap<String, PsiMember> augFeatures, Set<PsiElement> hierarchy )
+  private static void addFilesOfNavigationElements( LinkedHashMap<String, PsiMember> augFeatures, Set<Object> dependencies )
   {
     augFeatures.values().forEach( feature -> {
       PsiElement navigationElement = feature.getNavigationElement();
@@ -233,20 +328,20 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
         PsiFile containingFile = navigationElement.getContainingFile();
         if( containingFile != null )
         {
-          hierarchy.add( containingFile );
+          dependencies.add( containingFile );
         }
       }
     } );
   }
 
-  private void inferPropertyFieldsFromAccessors( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
+  private static void inferPropertyFieldsFromAccessors( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
   {
     forceAncestryToAugmentFields( psiClass, psiClass );
     PropertyInference.inferPropertyFields( psiClass, augFeatures );
   }
 
   private static final Key<Boolean> forceAncestryToAugmentFields_KEY = Key.create( "forceAncestryToAugment_TAG" );
-  private void forceAncestryToAugmentFields( PsiClass psiClass, PsiClass origin )
+  private static void forceAncestryToAugmentFields( PsiClass psiClass, PsiClass origin )
   {
     if( !(psiClass instanceof PsiExtensibleClass) ||
       psiClass.getUserData( forceAncestryToAugmentFields_KEY ) != null ||
@@ -276,7 +371,7 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
     }
   }
 
-  private void recreateNonbackingPropertyFields( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
+  private static void recreateNonbackingPropertyFields( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
   {
     if( !(psiClass instanceof ClsClassImpl) )
     {
@@ -317,7 +412,7 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
     }
   }
 
-  private ManLightFieldBuilder addPropField( PsiExtensibleClass psiClass, PsiMethod accessor, PsiAnnotation propgenAnno, String fieldName )
+  private static ManLightFieldBuilder addPropField( PsiExtensibleClass psiClass, PsiMethod accessor, PsiAnnotation propgenAnno, String fieldName )
   {
     @NotNull PsiParameter[] parameters = accessor.getParameterList().getParameters();
     PsiType type = parameters.length == 0 ? accessor.getReturnType() : parameters[0].getType();
@@ -364,13 +459,13 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
     return propField;
   }
 
-  private void addGetterSetterTag( PsiField propField, PsiMethod accessor )
+  private static void addGetterSetterTag( PsiField propField, PsiMethod accessor )
   {
     propField.putCopyableUserData( accessor.getParameterList().getParametersCount() == 0 ? GETTER_TAG : SETTER_TAG,
       SmartPointerManager.createPointer( accessor ) );
   }
 
-  private void addMethods( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
+  private static void addMethods( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
   {
     if( psiClass instanceof ClsClassImpl )
     {
@@ -33,14 +33,13 @@ import com.intellij.lexer.Lexer;
 import com.intellij.lexer.TokenList;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.impl.source.tree.TreeUtil;
 import com.intellij.psi.impl.source.tree.java.JavaFileElement;
 import com.intellij.psi.text.BlockSupport;
-import com.intellij.psi.util.CachedValueProvider;
-import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiUtil;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.indexing.IndexingDataKeys;
@@ -96,14 +95,21 @@ public class ManPsiBuilderFactoryImpl extends PsiBuilderFactoryImpl
 
     final ParserDefinition parserDefinition = LanguageParserDefinitions.INSTANCE.forLanguage( lang );
 
+    // scan the text for directives, the directive index must not be queried while parsing
     if( lexer instanceof JavaLexer )
     {
-      // Replace lexer to handle Preprocessor
-      lexer = new ManJavaLexer( (JavaLexer)lexer, PsiUtil.getLanguageLevel( project ) );
+      if( ManPreprocessorDirectiveIndex.containsDirective( seq ) )
+      {
+        // Replace lexer to handle Preprocessor
+        lexer = new ManJavaLexer( (JavaLexer)lexer, PsiUtil.getLanguageLevel( project ) );
+      }
     }
     else if( lexer == null )
     {
-      lexer = createLexer( project, lang );
+      lexer = lang == JavaLanguage.INSTANCE && !ManPreprocessorDirectiveIndex.containsDirective( seq )
+        // no preprocessor directives, the plain JavaLexer will do
+        ? JavaParserDefinition.createLexer( PsiUtil.getLanguageLevel( project ) )
+        : createLexer( project, lang );
     }
     else if( chameleon instanceof JavaFileElement )
     {
@@ -142,20 +148,38 @@ public class ManPsiBuilderFactoryImpl extends PsiBuilderFactoryImpl
       {
         // this can happen in the debugger when it evaluates expressions
       }
+
+      if( chameleon instanceof JavaFileElement )
+      {
+        // share tokens between all the trees built for the same version of the file
+        lexer = maybeObtainCachedTokens( (ManJavaLexer)lexer, chameleon, seq );
+      }
     }
     
     return new ManPsiBuilderImpl( project, parserDefinition, lexer, chameleon, seq );
   }
 
-  public static TokenList obtainTokens( @NotNull PsiFile file, ASTNode chameleon ) {
-    return CachedValuesManager.getCachedValue(file, () ->
+  public static TokenList obtainTokens( @NotNull PsiFile file, ASTNode chameleon )
+  {
+    ManJavaLexer lexer = (ManJavaLexer)ManJavaParserDefinition.createLexer( PsiUtil.getLanguageLevel( file ) );
+    lexer.setChameleon( chameleon );
+    CharSequence text = file.getViewProvider().getContents();
+    VirtualFile vfile = file.getViewProvider().getVirtualFile();
+    return vfile instanceof LightVirtualFile
+      ? TokenSequence.performLexing( text, lexer )
+      : ManTokenListCache.instance().obtainTokens( vfile, file.getViewProvider().getModificationStamp(), text, lexer );
+  }
+
+  private static Lexer maybeObtainCachedTokens( ManJavaLexer lexer, ASTNode chameleon, CharSequence seq )
+  {
+    PsiJavaFile psiFile = getPsiFile( chameleon );
+    if( psiFile == null || !psiFile.isPhysical() )
     {
-      ManJavaLexer lexer = (ManJavaLexer)ManJavaParserDefinition.createLexer( PsiUtil.getLanguageLevel( file ) );
-      lexer.setChameleon( chameleon );
-      return CachedValueProvider.Result.create(
-        TokenSequence.performLexing( file.getViewProvider().getContents(), lexer ),
-        file );
-    } );
+      return lexer;
+    }
+    VirtualFile vfile = psiFile.getViewProvider().getVirtualFile();
+    return ManTokenListCache.instance()
+      .obtainTokens( vfile, psiFile.getViewProvider().getModificationStamp(), seq, lexer ).asLexer();
   }
 
   @NotNull
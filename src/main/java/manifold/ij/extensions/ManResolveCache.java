@@ -36,6 +36,9 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StubTextInconsistencyException;
 import com.intellij.psi.util.*;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.*;
 
 import com.intellij.util.IdempotenceChecker;
@@ -50,6 +53,7 @@ import manifold.ij.psi.ManLightMethodBuilder;
 import manifold.ij.psi.ManPsiElementFactory;
 import manifold.ij.util.ManVersionUtil;
 import manifold.ij.util.ReparseUtil;
+import manifold.util.ManExceptionUtil;
 import manifold.util.ReflectUtil;
 import manifold.util.concurrent.LocklessLazyVar;
 import org.apache.log4j.Level;
@@ -63,6 +67,16 @@ public class ManResolveCache extends ResolveCache
   private static final String MANIFOLD_EXPERIMENTAL_FEATURES_ENABLED = "manifold.experimental.features.enabled";
   private static final LocklessLazyVar<boolean[]> EXPERIMENTAL_FEATURES_ENABLED = LocklessLazyVar.make( () ->
     new boolean[] {PropertiesComponent.getInstance().getBoolean( MANIFOLD_EXPERIMENTAL_FEATURES_ENABLED, true )} );
+  private static final LocklessLazyVar<Boolean> IS_2024_2 = LocklessLazyVar.make( () ->
+    ManVersionUtil.isAtLeast( 2024, 2, 0 ) );
+
+  // ResolveCache internals before 2024.2, looked up once instead of on each resolve
+  static final MethodHandle LEGACY_GET_INDEX = findLegacyAccessor( "getIndex", boolean.class, boolean.class );
+  static final MethodHandle LEGACY_GET_MAP = findLegacyAccessor( "getMap", boolean.class, int.class );
+
+  // bounds re-resolving after field augmenters are invoked, see maybeInvokeFieldAugmenter()
+  static final int MAX_AUGMENTER_DEPTH = 4;
+  static final ThreadLocal<AugmenterSession> AUGMENTER_SESSION = ThreadLocal.withInitial( AugmenterSession::new );
 
   public ManResolveCache( @NotNull Project project )
   {
@@ -97,18 +111,16 @@ public class ManResolveCache extends ResolveCache
     }
 
     boolean physical = containingFile.isPhysical();
-    int index;
     Map<T, ResolveResult[]> map;
     @Jailbreak ResolveCache me = this;
-    if( ManVersionUtil.isAtLeast( 2024, 2, 0 ) )
+    if( IS_2024_2.get() )
     {
-      index = me.getIndex( physical, incompleteCode, true );
+      int index = me.getIndex( physical, incompleteCode, true );
       map = me.getMap( index );
     }
     else
     {
-      index = (int)ReflectUtil.method( ResolveCache.class, "getIndex", boolean.class, boolean.class ).invokeStatic( incompleteCode, true );
-      map = (Map)ReflectUtil.method( me, "getMap", boolean.class, int.class ).invoke( physical, index );
+      map = getLegacyMap( physical, incompleteCode );
     }
     ResolveResult[] results = map.get( ref );
     if( results != null )
@@ -169,7 +181,19 @@ public class ManResolveCache extends ResolveCache
                 if( maybeInvokeFieldAugmenter( ref ) )
                 {
                   // trigger field augmenter if need be and re-resolve
-                  return resolveWithCaching( ref, resolver, needToPreventRecursion, incompleteCode, containingFile );
+                  AugmenterSession session = AUGMENTER_SESSION.get();
+                  session._depth++;
+                  try
+                  {
+                    return resolveWithCaching( ref, resolver, needToPreventRecursion, incompleteCode, containingFile );
+                  }
+                  finally
+                  {
+                    if( --session._depth == 0 )
+                    {
+                      session._augmented.clear();
+                    }
+                  }
                 }
               }
             }
@@ -205,6 +229,35 @@ public class ManResolveCache extends ResolveCache
     return results;
   }
 
+  <T extends PsiPolyVariantReference> Map<T, ResolveResult[]> getLegacyMap( boolean physical, boolean incompleteCode )
+  {
+    try
+    {
+      int index = (int)LEGACY_GET_INDEX.invoke( incompleteCode, true );
+      //noinspection unchecked
+      return (Map<T, ResolveResult[]>)LEGACY_GET_MAP.invoke( (ResolveCache)this, physical, index );
+    }
+    catch( Throwable t )
+    {
+      throw ManExceptionUtil.unchecked( t );
+    }
+  }
+
+  private static MethodHandle findLegacyAccessor( String name, Class<?>... paramTypes )
+  {
+    try
+    {
+      Method method = ResolveCache.class.getDeclaredMethod( name, paramTypes );
+      method.setAccessible( true );
+      return MethodHandles.lookup().unreflect( method );
+    }
+    catch( ReflectiveOperationException | RuntimeException e )
+    {
+      // 2024.2 and later, the accessor has a different signature and is called directly
+      return null;
+    }
+  }
+
   static boolean isExperimentalFeaturesEnabled()
   {
     return EXPERIMENTAL_FEATURES_ENABLED.get()[0];
@@ -267,6 +320,12 @@ public class ManResolveCache extends ResolveCache
     // limiting to ClsClassImpl for now, maybe source classes too someday if necessary
     if( psiClass instanceof ClsClassImpl )
     {
+      AugmenterSession session = AUGMENTER_SESSION.get();
+      if( session._depth >= MAX_AUGMENTER_DEPTH || !session._augmented.add( psiClass ) )
+      {
+        // augmenters already invoked for this class while resolving, re-resolving again won't change the result
+        return false;
+      }
       PsiAugmentProvider.collectAugments( psiClass, PsiField.class, null );
       return true;
     }
@@ -274,6 +333,15 @@ public class ManResolveCache extends ResolveCache
     return false;
   }
 
+  /**
+   * Classes whose field augmenters were invoked during a resolve on this thread, and how deep the re-resolving is
+   */
+  static class AugmenterSession
+  {
+    final Set<PsiClass> _augmented = new HashSet<>();
+    int _depth;
+  }
+
   private boolean isJailbreakType( PsiType type )
   {
     return type != null && type.findAnnotation( Jailbreak.class.getTypeName() ) != null;
@@ -287,8 +355,10 @@ public class ManResolveCache extends ResolveCache
 //      return;
 //    }
 
-    if( !hasSelfAnnotation( method ) )
+    long selfPositions = SelfTypeUtil.instance().getSelfTypePositions( method );
+    if( selfPositions == 0 )
     {
+      // no self types, the common case
       return;
     }
 
@@ -305,7 +375,7 @@ public class ManResolveCache extends ResolveCache
     }
 
     // Reassign the candidate method with one that has Self type substitution
-    info.jailbreak().myCandidate = wrapMethod( manModule, method, ref );
+    info.jailbreak().myCandidate = wrapMethod( manModule, method, selfPositions, ref );
   }
 
   private void handleFieldSelfTypes( CandidateInfo info, PsiPolyVariantReference ref )
@@ -340,7 +410,7 @@ public class ManResolveCache extends ResolveCache
     return wrappedField;
   }
 
-  private PsiMethod wrapMethod( ManModule manModule, PsiMethod refMethod, PsiPolyVariantReference ref )
+  private PsiMethod wrapMethod( ManModule manModule, PsiMethod refMethod, long selfPositions, PsiPolyVariantReference ref )
   {
     ManPsiElementFactory manPsiElemFactory = ManPsiElementFactory.instance();
     String methodName = refMethod.getName();
@@ -349,7 +419,10 @@ public class ManResolveCache extends ResolveCache
       .createLightMethod( manModule, psiClass.getManager(), methodName )
       .withContainingClass( psiClass );
     method.withNavigationElement( refMethod.getNavigationElement() );
-    method.withMethodReturnType( handleType( refMethod.getReturnType(), ref, refMethod ) );
+    PsiType returnType = refMethod.getReturnType();
+    method.withMethodReturnType( SelfTypeUtil.isSelfPosition( selfPositions, SelfTypeUtil.RETURN_POSITION )
+      ? handleType( returnType, ref, refMethod )
+      : returnType );
     copyAnnotations( refMethod, method );
 
     copyModifiers( refMethod, method );
@@ -360,10 +433,13 @@ public class ManResolveCache extends ResolveCache
     }
 
     PsiParameter[] parameters = refMethod.getParameterList().getParameters();
-    for( PsiParameter psiParameter: parameters )
+    for( int i = 0; i < parameters.length; i++ )
     {
+      PsiParameter psiParameter = parameters[i];
 //      method.withParameter( psiParameter.getName(), psiParameter.getType() );
-      PsiType type = handleType( psiParameter.getType(), ref, refMethod );
+      PsiType type = SelfTypeUtil.isSelfPosition( selfPositions, i + 1 )
+        ? handleType( psiParameter.getType(), ref, refMethod )
+        : psiParameter.getType();
       method.withParameter( psiParameter.getName(), type );
     }
 
@@ -431,22 +507,6 @@ public class ManResolveCache extends ResolveCache
     }
   }
 
-  private boolean hasSelfAnnotation( PsiMethod m )
-  {
-    if( SelfTypeUtil.instance().hasSelfAnnotation( m.getReturnType() ) )
-    {
-      return true;
-    }
-    for( PsiParameter param: m.getParameterList().getParameters() )
-    {
-      if( SelfTypeUtil.instance().hasSelfAnnotation( param.getType() ) )
-      {
-        return true;
-      }
-    }
-    return false;
-  }
-
   private static boolean isStatic( PsiModifierListOwner owner )
   {
     if( owner == null )
@@ -26,11 +26,15 @@ import com.intellij.psi.JavaTokenType;
 import com.intellij.psi.LanguageInjector;
 import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiLanguageInjectionHost;
+import com.intellij.psi.PsiMember;
 import com.intellij.psi.PsiModifierListOwner;
 import com.intellij.psi.PsiNameValuePair;
 import com.intellij.psi.impl.source.tree.java.PsiLiteralExpressionImpl;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import java.util.List;
 
 import com.intellij.psi.tree.IElementType;
@@ -66,12 +70,18 @@ public class ManStringLiteralTemplateInjector implements LanguageInjector
       return;
     }
 
+    String hostText = host.getText();
+    if( hostText.indexOf( '$' ) < 0 )
+    {
+      // Not a template, skip the tree walk and the parse
+      return;
+    }
+
     if( isStringLiteralTemplatesDisabled( stringLiteral, ManProject.getModule( stringLiteral ) ) )
     {
       return;
     }
 
-    String hostText = host.getText();
     List<StringLiteralTemplateParser.Expr> exprs =
       StringLiteralTemplateParser.parse( index -> isEscaped( hostText, index ), false, hostText );
     if( exprs.isEmpty() )
@@ -109,37 +119,70 @@ public class ManStringLiteralTemplateInjector implements LanguageInjector
 
   private boolean isStringLiteralTemplatesDisabled( PsiElement elem, ManModule module )
   {
-    if( elem == null )
-    {
-      return false;
-    }
-
     if( module != null && !module.isStringsEnabled() )
     {
       return true;
     }
+    return isStringLiteralTemplatesDisabled( elem );
+  }
 
-    if( elem instanceof PsiModifierListOwner )
+  private static boolean isStringLiteralTemplatesDisabled( PsiElement elem )
+  {
+    for( PsiElement csr = elem; csr != null; csr = csr.getParent() )
     {
-      for( PsiAnnotation anno: ((PsiModifierListOwner)elem).getAnnotations() )
+      if( csr instanceof PsiMember )
       {
-        if( DisableStringLiteralTemplates.class.getTypeName().equals( anno.getQualifiedName() ) )
+        // the rest of the walk is cached per member and class
+        return isStringLiteralTemplatesDisabled( (PsiMember)csr );
+      }
+
+      if( csr instanceof PsiModifierListOwner )
+      {
+        // a local variable or parameter, not worth a cached value each, just check its annotation
+        Boolean disabled = findDisableStringLiteralTemplates( (PsiModifierListOwner)csr );
+        if( disabled != null )
         {
-          final PsiNameValuePair[] attributes = anno.getParameterList().getAttributes();
-          if( attributes.length > 0 )
-          {
-            Object value = ComputeUtil.computeLiteralValue( attributes[0] );
-            return !(value instanceof Boolean) || (boolean)value;
-          }
-          return true;
+          return disabled;
         }
       }
+
+      PsiElement parent = csr.getParent();
+      if( parent instanceof PsiAnnotation )
+      {
+        // string templates disabled in annotations because too many annotations allow ${} templating
+        return true;
+      }
+
+      if( parent == null || parent instanceof PsiJavaFile )
+      {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isStringLiteralTemplatesDisabled( PsiMember member )
+  {
+    PsiFile file = member.getContainingFile();
+    if( file == null )
+    {
+      return computeStringLiteralTemplatesDisabled( member );
+    }
+    return CachedValuesManager.getCachedValue( member, () -> CachedValueProvider.Result.create(
+      computeStringLiteralTemplatesDisabled( member ), file ) );
+  }
+
+  private static boolean computeStringLiteralTemplatesDisabled( PsiMember member )
+  {
+    Boolean disabled = findDisableStringLiteralTemplates( member );
+    if( disabled != null )
+    {
+      return disabled;
     }
 
-    PsiElement parent = elem.getParent();
+    PsiElement parent = member.getParent();
     if( parent instanceof PsiAnnotation )
     {
-      // string templates disabled in annotations because too many annotations allow ${} templating
       return true;
     }
 
@@ -148,7 +191,29 @@ public class ManStringLiteralTemplateInjector implements LanguageInjector
       return false;
     }
 
-    return isStringLiteralTemplatesDisabled( elem.getParent(), module );
+    return isStringLiteralTemplatesDisabled( parent );
+  }
+
+  /**
+   * @return The value of {@code owner}'s {@code @DisableStringLiteralTemplates} annotation, or null if it is not
+   * annotated
+   */
+  private static Boolean findDisableStringLiteralTemplates( PsiModifierListOwner owner )
+  {
+    for( PsiAnnotation anno: owner.getAnnotations() )
+    {
+      if( DisableStringLiteralTemplates.class.getTypeName().equals( anno.getQualifiedName() ) )
+      {
+        final PsiNameValuePair[] attributes = anno.getParameterList().getAttributes();
+        if( attributes.length > 0 )
+        {
+          Object value = ComputeUtil.computeLiteralValue( attributes[0] );
+          return !(value instanceof Boolean) || (boolean)value;
+        }
+        return true;
+      }
+    }
+    return null;
   }
 
   private PsiLiteralExpressionImpl getJavaStringLiteral( @NotNull PsiLanguageInjectionHost host )
@@ -0,0 +1,210 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.lang.impl.TokenSequence;
+import com.intellij.lexer.TokenList;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import manifold.ij.util.ReparseUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * For the Preprocessor. A bounded LRU cache of the tokens {@link ManJavaLexer} produces for a whole Java file, so the
+ * same version of a file is lexed once no matter how many times its tree is built, e.g., stubs then AST, or a new PSI
+ * for an unchanged document.
+ * <p/>
+ * Entries are keyed on the file, its modification stamp, and the lexer configuration. Since preprocessor output also
+ * depends on definitions outside the file (build.properties, BuildConfig, the JDK, module-info, etc.), the cache is
+ * cleared whenever {@link ReparseUtil} reports a definitions change, and a file's entries are dropped when the file is
+ * forced to reparse.
+ */
+public class ManTokenListCache
+{
+  private static final int MAX_ENTRIES = 64;
+  private static final long MAX_BYTES = 32L * 1024 * 1024;
+  // approximate cost of a token: start offset and token type reference
+  private static final int BYTES_PER_TOKEN = 12;
+
+  private static final ManTokenListCache INSTANCE = new ManTokenListCache();
+
+  public static ManTokenListCache instance()
+  {
+    return INSTANCE;
+  }
+
+  private final LinkedHashMap<Key, Entry> _cache;
+  private long _bytes;
+  private long _definitionsModCount;
+
+  private ManTokenListCache()
+  {
+    _cache = new LinkedHashMap<>( 16, 0.75f, true );
+  }
+
+  TokenList obtainTokens( @NotNull VirtualFile file, long stamp, @NotNull CharSequence text, @NotNull ManJavaLexer lexer )
+  {
+    Key key = new Key( file, stamp, lexer.getLanguageLevel(), ManJavaLexer.isDumbPreprocessorMode() );
+    TokenList tokens = get( key, text );
+    if( tokens == null )
+    {
+      tokens = TokenSequence.performLexing( text, lexer );
+      put( key, text, tokens );
+    }
+    return tokens;
+  }
+
+  private synchronized TokenList get( Key key, CharSequence text )
+  {
+    long definitionsModCount = ReparseUtil.instance().getDefinitionsModificationCount();
+    if( _definitionsModCount != definitionsModCount )
+    {
+      clear();
+      _definitionsModCount = definitionsModCount;
+      return null;
+    }
+
+    Entry entry = _cache.get( key );
+    if( entry == null )
+    {
+      return null;
+    }
+    if( entry._text != text && !StringUtil.equals( entry._text, text ) )
+    {
+      // same stamp, different text e.g., a non-physical copy, don't trust it
+      remove( key );
+      return null;
+    }
+    return entry._tokens;
+  }
+
+  private synchronized void put( Key key, CharSequence text, TokenList tokens )
+  {
+    Entry entry = new Entry( text, tokens );
+    if( entry._bytes > MAX_BYTES / 4 )
+    {
+      // don't let one huge file push everything else out
+      return;
+    }
+
+    remove( key );
+    _cache.put( key, entry );
+    _bytes += entry._bytes;
+
+    for( Iterator<Map.Entry<Key, Entry>> iter = _cache.entrySet().iterator();
+         iter.hasNext() && (_cache.size() > MAX_ENTRIES || _bytes > MAX_BYTES); )
+    {
+      // evict least recently used
+      _bytes -= iter.next().getValue()._bytes;
+      iter.remove();
+    }
+  }
+
+  private void remove( Key key )
+  {
+    Entry entry = _cache.remove( key );
+    if( entry != null )
+    {
+      _bytes -= entry._bytes;
+    }
+  }
+
+  /**
+   * Drops the tokens cached for {@code file}, e.g., the environment may have changed while the file was closed, so the
+   * tokens cached for its unchanged content may be stale.
+   */
+  public synchronized void invalidate( @NotNull VirtualFile file )
+  {
+    for( Iterator<Map.Entry<Key, Entry>> iter = _cache.entrySet().iterator(); iter.hasNext(); )
+    {
+      Map.Entry<Key, Entry> entry = iter.next();
+      if( entry.getKey()._file.equals( file ) )
+      {
+        _bytes -= entry.getValue()._bytes;
+        iter.remove();
+      }
+    }
+  }
+
+  synchronized void clear()
+  {
+    _cache.clear();
+    _bytes = 0;
+  }
+
+  private static class Key
+  {
+    private final VirtualFile _file;
+    private final long _stamp;
+    private final LanguageLevel _level;
+    private final boolean _dumbMode;
+
+    Key( VirtualFile file, long stamp, LanguageLevel level, boolean dumbMode )
+    {
+      _file = file;
+      _stamp = stamp;
+      _level = level;
+      _dumbMode = dumbMode;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if( this == o )
+      {
+        return true;
+      }
+      if( !(o instanceof Key) )
+      {
+        return false;
+      }
+      Key key = (Key)o;
+      return _stamp == key._stamp &&
+        _dumbMode == key._dumbMode &&
+        _file.equals( key._file ) &&
+        _level == key._level;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash( _file, _stamp, _level, _dumbMode );
+    }
+  }
+
+  private static class Entry
+  {
+    private final CharSequence _text;
+    private final TokenList _tokens;
+    private final long _bytes;
+
+    Entry( CharSequence text, TokenList tokens )
+    {
+      _text = text;
+      _tokens = tokens;
+      _bytes = (long)text.length() * 2 + (long)tokens.getTokenCount() * BYTES_PER_TOKEN;
+    }
+  }
+}
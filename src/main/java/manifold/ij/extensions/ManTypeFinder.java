@@ -156,6 +156,7 @@ public class ManTypeFinder extends PsiElementFinder
     List<ManModule> modules = findModules( scope );
 
     String parentPackage = psiPackage.getQualifiedName();
+    Set<String> fragmentNames = ManFileFragmentIndex.findFragmentNames( _project, parentPackage, scope );
     Set<PsiClass> children = new HashSet<>();
     for( ManModule mm : modules )
     {
@@ -179,6 +180,16 @@ public class ManTypeFinder extends PsiElementFinder
           }
         }
       }
+
+      // file fragments may not be known to the type manifolds yet, if their host files have not been tokenized
+      for( String name : fragmentNames )
+      {
+        PsiClass psiClass = ManifoldPsiClassCache.getPsiClass( mm, parentPackage.isEmpty() ? name : parentPackage + '.' + name );
+        if( psiClass != null )
+        {
+          children.add( psiClass );
+        }
+      }
     }
     if( !children.isEmpty() )
     {
@@ -0,0 +1,93 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.lang.annotation.AnnotationHolder;
+import com.intellij.lang.annotation.Annotator;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import java.util.ArrayList;
+import java.util.List;
+import manifold.ij.core.ManProject;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The single annotator for manifold's checks in Java files. Instead of each check walking the tree and doing its own
+ * type dispatch and module lookup, elements are dispatched by their class to the {@link ManJavaAnnotationHandler}s
+ * interested in them, and state common to the file is computed once in a {@link ManJavaAnnotatorContext}.
+ */
+public class ManifoldJavaAnnotator implements Annotator
+{
+  private static final ManJavaAnnotationHandler[] HANDLERS = {
+    new ExtensionClassAnnotator(),
+    new ExtensionMethodCallSiteAnnotator(),
+    new PropertiesAnnotator(),
+    new DelegationAnnotator(),
+    new SelfUsageAnnotator(),
+    new JailbreakUsageAnnotator(),
+    new MiscAnnotator(),
+  };
+
+  // element class -> handlers for it, in the order of HANDLERS
+  private static final ClassValue<ManJavaAnnotationHandler[]> DISPATCH = new ClassValue<>()
+  {
+    @Override
+    protected ManJavaAnnotationHandler[] computeValue( Class<?> elementClass )
+    {
+      List<ManJavaAnnotationHandler> handlers = new ArrayList<>();
+      for( ManJavaAnnotationHandler handler: HANDLERS )
+      {
+        if( handler.getElementTypes().stream().anyMatch( type -> type.isAssignableFrom( elementClass ) ) )
+        {
+          handlers.add( handler );
+        }
+      }
+      return handlers.toArray( new ManJavaAnnotationHandler[0] );
+    }
+  };
+
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  {
+    ManJavaAnnotationHandler[] handlers = DISPATCH.get( element.getClass() );
+    if( handlers.length == 0 )
+    {
+      return;
+    }
+
+    if( !ManProject.isManifoldInUse( element ) )
+    {
+      // Manifold jars are not used in the project
+      return;
+    }
+
+    PsiFile file = element.getContainingFile();
+    if( file == null )
+    {
+      return;
+    }
+
+    ManJavaAnnotatorContext context = ManJavaAnnotatorContext.get( file );
+    for( ManJavaAnnotationHandler handler: handlers )
+    {
+      handler.annotate( element, holder, context );
+    }
+  }
+}
@@ -36,6 +36,7 @@ import com.intellij.psi.impl.PsiManagerImpl;
 import com.intellij.psi.impl.light.LightClass;
 import com.intellij.psi.impl.smartPointers.SmartPointerManagerImpl;
 import com.intellij.psi.util.ClassUtil;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -57,6 +58,7 @@ public class ManifoldPsiClass extends LightClass
   private final String _fqn;
   private final ManModule _manModule;
   private final DiagnosticCollector<JavaFileObject> _issues;
+  private volatile CurrentFragment _currentFragment;
 
   public ManifoldPsiClass( PsiClass delegate, ManModule module, List<IFile> files, String fqn, DiagnosticCollector<JavaFileObject> issues )
   {
@@ -225,4 +227,31 @@ public class ManifoldPsiClass extends LightClass
   {
     return _ifiles.stream().anyMatch( e -> e instanceof IFileFragment );
   }
+
+  /**
+   * @return True if {@code host} with its file's modification {@code stamp} is the fragment host last found to be
+   * current for this class, see {@link #setCurrentFragment}
+   */
+  boolean isCurrentFragment( PsiElement host, long stamp )
+  {
+    CurrentFragment current = _currentFragment;
+    return current != null && current._stamp == stamp && current._host.get() == host;
+  }
+
+  void setCurrentFragment( PsiElement host, long stamp )
+  {
+    _currentFragment = new CurrentFragment( host, stamp );
+  }
+
+  private static class CurrentFragment
+  {
+    private final WeakReference<PsiElement> _host;
+    private final long _stamp;
+
+    private CurrentFragment( PsiElement host, long stamp )
+    {
+      _host = new WeakReference<>( host );
+      _stamp = stamp;
+    }
+  }
 }
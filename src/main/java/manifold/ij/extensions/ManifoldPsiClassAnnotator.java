@@ -19,17 +19,37 @@
 
 package manifold.ij.extensions;
 
+import com.intellij.lang.Language;
+import com.intellij.lang.LanguageAnnotators;
 import com.intellij.lang.annotation.*;
+import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.impl.DocumentMarkupModel;
 import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.fileTypes.ExtensionFileNameMatcher;
+import com.intellij.openapi.fileTypes.FileNameMatcher;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.fileTypes.PlainTextLanguage;
+import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
+import com.intellij.psi.impl.compiled.ClsFileImpl;
+import com.intellij.psi.impl.source.PsiJavaFileImpl;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
@@ -37,14 +57,147 @@ import javax.tools.JavaFileObject;
 
 import com.intellij.util.SmartList;
 import manifold.api.fs.IFileFragment;
+import manifold.api.type.ContributorKind;
+import manifold.api.type.ITypeManifold;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
+import manifold.ij.fs.IjFile;
+import manifold.ij.util.FileUtil;
+import manifold.internal.javac.FragmentProcessor;
 import org.jetbrains.annotations.NotNull;
 
 /**
+ * Reports the issues of Manifold types on their resource files and fragments. The annotator is registered only with
+ * the languages of files type manifolds handle, see {@link #updateRegistration()}.
  */
 public class ManifoldPsiClassAnnotator implements Annotator
 {
+  private static final ManifoldPsiClassAnnotator INSTANCE = new ManifoldPsiClassAnnotator();
+  private static final Set<Language> REGISTERED_LANGUAGES = new HashSet<>();
+
+  /**
+   * Registers the annotator with the languages of the file types having an extension handled by a type manifold in
+   * any open project, and unregisters it from languages no longer handled. Java is always included for file fragments
+   * and plain text for resource files without a language of their own. Call this when the type manifolds change.
+   */
+  public static void updateRegistration()
+  {
+    Set<Language> languages = ReadAction.compute( ManifoldPsiClassAnnotator::findResourceLanguages );
+    updateRegistration( languages );
+  }
+
+  private static synchronized void updateRegistration( Set<Language> languages )
+  {
+    for( Language language: languages )
+    {
+      if( REGISTERED_LANGUAGES.add( language ) )
+      {
+        LanguageAnnotators.INSTANCE.addExplicitExtension( language, INSTANCE );
+      }
+    }
+    for( Iterator<Language> iter = REGISTERED_LANGUAGES.iterator(); iter.hasNext(); )
+    {
+      Language language = iter.next();
+      if( !languages.contains( language ) )
+      {
+        LanguageAnnotators.INSTANCE.removeExplicitExtension( language, INSTANCE );
+        iter.remove();
+      }
+    }
+  }
+
+  private static Set<Language> findResourceLanguages()
+  {
+    Set<Language> languages = new HashSet<>();
+    languages.add( JavaLanguage.INSTANCE );
+    languages.add( PlainTextLanguage.INSTANCE );
+
+    Set<ITypeManifold> typeManifolds = new HashSet<>();
+    for( ManProject manProject: ManProject.getAllProjects() )
+    {
+      Map<Module, ManModule> modules = manProject.getModules();
+      if( modules != null )
+      {
+        modules.values().forEach( m -> typeManifolds.addAll( m.getTypeManifolds() ) );
+      }
+    }
+    if( typeManifolds.isEmpty() )
+    {
+      return languages;
+    }
+
+    FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+    for( FileType fileType: fileTypeManager.getRegisteredFileTypes() )
+    {
+      if( !(fileType instanceof LanguageFileType) )
+      {
+        continue;
+      }
+      for( FileNameMatcher matcher: fileTypeManager.getAssociations( fileType ) )
+      {
+        String ext = getExtension( matcher );
+        if( ext == null || typeManifolds.stream().anyMatch( tm -> tm.handlesFileExtension( ext ) ) )
+        {
+          languages.add( ((LanguageFileType)fileType).getLanguage() );
+          break;
+        }
+      }
+    }
+    return languages;
+  }
+
+  /**
+   * @return The extension of the file names {@code matcher} matches, or null if it can't be determined e.g.,
+   * {@code *.j*}, in which case the file type's language is registered to be safe, the file-level gate still applies
+   */
+  private static String getExtension( FileNameMatcher matcher )
+  {
+    if( matcher instanceof ExtensionFileNameMatcher )
+    {
+      return ((ExtensionFileNameMatcher)matcher).getExtension();
+    }
+
+    // exact names and wildcard patterns such as "schema.graphql" or "*.graphqls"
+    String pattern = matcher.getPresentableString();
+    int iDot = pattern.lastIndexOf( '.' );
+    if( iDot < 0 || iDot == pattern.length() - 1 )
+    {
+      return null;
+    }
+    String ext = pattern.substring( iDot + 1 );
+    return ext.indexOf( '*' ) >= 0 || ext.indexOf( '?' ) >= 0 ? null : ext;
+  }
+
+  /**
+   * A fast file-level gate, cached per file. A Java file is only of interest if it has file fragments, any other file
+   * if a primary type manifold handles it.
+   */
+  static boolean hostsManifoldTypes( @NotNull PsiFile psiFile )
+  {
+    return CachedValuesManager.getCachedValue( psiFile, () -> CachedValueProvider.Result.create(
+      computeHostsManifoldTypes( psiFile ), psiFile, ProjectRootManager.getInstance( psiFile.getProject() ) ) );
+  }
+
+  private static boolean computeHostsManifoldTypes( PsiFile psiFile )
+  {
+    if( psiFile instanceof PsiJavaFileImpl || psiFile instanceof ClsFileImpl )
+    {
+      // not a resource file, but may have file fragments
+      return StringUtil.contains( psiFile.getViewProvider().getContents(), FragmentProcessor.FRAGMENT_START );
+    }
+
+    VirtualFile virtualFile = psiFile.getVirtualFile();
+    if( virtualFile == null )
+    {
+      return false;
+    }
+    ManProject manProject = ManProject.manProjectFrom( psiFile.getProject() );
+    IjFile file = FileUtil.toIFile( manProject, virtualFile );
+    return !ManModule.findTypeManifoldsForFile( psiFile.getProject(), file,
+      tm -> tm.getContributorKind() == ContributorKind.Primary,
+      tm -> tm.getContributorKind() == ContributorKind.Primary ).isEmpty();
+  }
+
   @Override
   public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
   {
@@ -54,6 +207,12 @@ public class ManifoldPsiClassAnnotator implements Annotator
       return;
     }
 
+    PsiFile containingFile = element.getContainingFile();
+    if( containingFile == null || !hostsManifoldTypes( containingFile ) )
+    {
+      return;
+    }
+
     if( element instanceof PsiFile )
     {
       // We don't have file-level errors here, only parse errors wrt elements.
@@ -30,6 +30,8 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.openapi.util.text.Strings;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
@@ -82,6 +84,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   private final ThreadLocal<Set<String>> _shortCircuit;
   private ConcurrentHashMap<String, PsiClass> _filePathToPsi;
   private final Map<ManModule, FqnCache<ManifoldPsiClass>> _fqnPsiCachePerModule;
+  private final SimpleModificationTracker _modificationTracker;
 
   public ManifoldPsiClassCache( ManProject project )
   {
@@ -90,6 +93,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     _shortCircuit = ThreadLocal.withInitial( () -> new ConcurrentHashSet<>() );
     _filePathToPsi = new ConcurrentHashMap<>();
     _fqnPsiCachePerModule = new ConcurrentWeakHashMap<>();
+    _modificationTracker = new SimpleModificationTracker();
   }
 
   public ManProject getProject()
@@ -97,6 +101,15 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     return _project;
   }
 
+  /**
+   * Incremented whenever cached classes are dropped, use this as a dependency for values derived from the classes
+   * e.g., mappings from resource file elements to the members of their generated classes.
+   */
+  public ModificationTracker getModificationTracker()
+  {
+    return _modificationTracker;
+  }
+
   public static PsiClass getPsiClass( ManModule module, String fqn )
   {
     return module.getProject().getPsiClassCache()._getPsiClass( module, fqn );
@@ -122,7 +135,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
       List<IFile> files = ((ManifoldPsiClass)psiClass).getFiles();
       for( IFile file: files )
       {
-        if( isStaleFileFragment( file ) )
+        if( isStaleFileFragment( (ManifoldPsiClass)psiClass, file ) )
         {
           getProject().getFileModificationManager().getManRefresher().deleted( file );
           return null;
@@ -132,7 +145,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     return psiClass;
   }
 
-  private boolean isStaleFileFragment( IFile file )
+  private boolean isStaleFileFragment( ManifoldPsiClass psiClass, IFile file )
   {
     if( file instanceof IFileFragment )
     {
@@ -148,8 +161,23 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
         {
           return true;
         }
+
+        // the host element's text can't change without the file's stamp changing, so only reparse the fragment when
+        // either one changes
+        PsiFile hostFile = elem.isValid() ? elem.getContainingFile() : null;
+        long stamp = hostFile == null ? -1 : hostFile.getModificationStamp();
+        if( stamp >= 0 && psiClass.isCurrentFragment( elem, stamp ) )
+        {
+          return false;
+        }
+
         FragmentProcessor.Fragment fragment = FragmentProcessor.instance().parseFragment( 0, elem.getText(), ((PsiFileFragment)elem).getStyle() );
-        return fragment == null || !fragment.getName().equals( file.getBaseName() ) || !fragment.getExt().equalsIgnoreCase( file.getExtension() );
+        boolean stale = fragment == null || !fragment.getName().equals( file.getBaseName() ) || !fragment.getExt().equalsIgnoreCase( file.getExtension() );
+        if( !stale && stamp >= 0 )
+        {
+          psiClass.setCurrentFragment( elem, stamp );
+        }
+        return stale;
       }
     }
     return false;
@@ -475,6 +503,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
       throw new IllegalStateException();
     }
 
+    _modificationTracker.incModificationCount();
     ManModule module = (ManModule)request.module;
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
     for( String type : request.types )
@@ -526,11 +555,32 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   @Override
   public void refreshed()
   {
+    _modificationTracker.incModificationCount();
     _filePathToPsi = new ConcurrentHashMap<>();
     _fqnPsiCachePerModule.clear();
 
-    // reparse all files that have at least one embedded fragment, otherwise types will re-resolve normally
-    FragmentCache.instance().reparseAll( getProject().getNativeProject() );
+    // refresh all the embedded fragments, otherwise types will re-resolve normally
+    FragmentCache.instance().refreshAll( getProject().getNativeProject() );
+  }
+
+  /**
+   * Called when {@code ijModules} are rebuilt after a roots change, drops only the classes cached for them. Classes of
+   * other modules remain cached.
+   */
+  public void modulesRefreshed( Set<Module> ijModules )
+  {
+    _modificationTracker.incModificationCount();
+    for( ManModule module: new ArrayList<>( _fqnPsiCachePerModule.keySet() ) )
+    {
+      if( ijModules.contains( module.getIjModule() ) )
+      {
+        _fqnPsiCachePerModule.remove( module );
+      }
+    }
+    _filePathToPsi.values().removeIf( psiClass ->
+      psiClass instanceof ManifoldPsiClass && ijModules.contains( ((ManifoldPsiClass)psiClass).getModule() ) );
+
+    FragmentCache.instance().refreshAll( getProject().getNativeProject(), ijModules );
   }
 
   private class PsiTreeChangeHandler extends PsiTreeChangeAdapter
@@ -557,7 +607,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
 //      }
       if( Strings.areSameInstance( propertyName, PsiTreeChangeEvent.PROP_ROOTS ) )
       {
-        refreshed();
+        // roots changes are handled per module, see ManProject#rootsChanged() and modulesRefreshed()
       //  ReparseUtil.instance().reparseRecentJavaFiles( getProject().getNativeProject(), true );
       }
     }
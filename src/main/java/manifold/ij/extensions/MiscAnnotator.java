@@ -21,9 +21,9 @@ package manifold.ij.extensions;
 
 import com.intellij.ide.highlighter.JavaHighlightingColors;
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.psi.*;
+import java.util.List;
 import manifold.ExtIssueMsg;
 import manifold.api.util.IssueMsg;
 import manifold.ij.core.ManModule;
@@ -39,16 +39,20 @@ import org.jetbrains.annotations.Nullable;
 /**
  * Annotator for miscellaneous errors & warnings
  */
-public class MiscAnnotator implements Annotator
+public class MiscAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiJavaCodeReferenceElement.class, PsiMethod.class, ManPsiTupleExpression.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
     highlightAutoAsKeyword( element, holder );
 
     verifyMethodRefNotExtension( element, holder );
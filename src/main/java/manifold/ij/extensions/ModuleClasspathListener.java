@@ -39,16 +39,12 @@ public class ModuleClasspathListener implements ModuleRootListener
   public void rootsChanged( ModuleRootEvent event )
   {
     Project project = (Project)event.getSource();
-    resetProject( project );
-  }
-
-  private void resetProject( Project project )
-  {
     if( !project.isInitialized() )
     {
       return;
     }
 
-    ManProject.manProjectFrom( project ).reset();
+    // rebuilds only the modules affected by the change
+    ManProject.manProjectFrom( project ).rootsChanged();
   }
 }
@@ -21,9 +21,7 @@ package manifold.ij.extensions;
 
 import com.intellij.codeInsight.daemon.JavaErrorBundle;
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
-import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiExtensibleClass;
@@ -31,12 +29,12 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 import manifold.ext.props.rt.api.*;
 import manifold.ij.core.ManModule;
-import manifold.ij.core.ManProject;
 import manifold.ij.psi.ManLightFieldBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.annotation.Annotation;
+import java.util.List;
 import java.util.Objects;
 
 import static java.lang.reflect.Modifier.*;
@@ -46,24 +44,27 @@ import static manifold.ij.extensions.PropertyInference.*;
 /**
  *
  */
-public class PropertiesAnnotator implements Annotator
+public class PropertiesAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiReferenceExpression.class, PsiField.class, PsiAssignmentExpression.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      // Manifold jars are not used in the project
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
-    if( DumbService.getInstance( element.getProject() ).isDumb() )
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
+    if( context.isDumb() )
     {
       // skip processing during index rebuild
       return;
     }
 
-    ManModule module = ManProject.getModule( element );
+    ManModule module = context.getModule();
 
     errorIfPropertyAccess( module, element, holder );
 
@@ -22,8 +22,13 @@ package manifold.ij.extensions;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.augment.PsiAugmentProvider;
+import com.intellij.psi.impl.compiled.ClsClassImpl;
 import com.intellij.psi.impl.source.PsiExtensibleClass;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiUtil;
 import manifold.ext.props.rt.api.*;
 import manifold.ij.psi.ManLightFieldBuilder;
@@ -50,6 +55,17 @@ class PropertyInference
   static final Key<SmartPsiElementPointer<PsiMethod>> GETTER_TAG = Key.create( "GETTER_TAG" );
   static final Key<SmartPsiElementPointer<PsiMethod>> SETTER_TAG = Key.create( "SETTER_TAG" );
 
+  private static final int MAX_LIBRARY_CLASSES = 4096;
+  static final Map<String, List<LibraryProperty>> LIBRARY_PROPERTIES = Collections.synchronizedMap(
+    new LinkedHashMap<String, List<LibraryProperty>>( 16, 0.75f, true )
+    {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, List<LibraryProperty>> eldest )
+      {
+        return size() > MAX_LIBRARY_CLASSES;
+      }
+    } );
+
   private final LinkedHashMap<String, PsiMember> _augFeatures;
 
   static void inferPropertyFields( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
@@ -64,17 +80,140 @@ class PropertyInference
   }
 
   private void inferPropertyFields( PsiExtensibleClass psiClass )
+  {
+    List<PsiMethod> methods = getMethodsForClass( psiClass );
+    String libraryKey = makeLibraryKey( psiClass, methods );
+    List<InferredProperty> inferred;
+    if( libraryKey == null )
+    {
+      inferred = findInferredProperties( methods );
+    }
+    else
+    {
+      List<LibraryProperty> libraryProps = LIBRARY_PROPERTIES.get( libraryKey );
+      if( libraryProps == null )
+      {
+        inferred = findInferredProperties( methods );
+        LIBRARY_PROPERTIES.put( libraryKey, LibraryProperty.from( inferred, methods ) );
+      }
+      else
+      {
+        inferred = LibraryProperty.to( libraryProps, methods );
+      }
+    }
+
+    for( InferredProperty prop : inferred )
+    {
+      prop.make( this );
+    }
+  }
+
+  private static List<InferredProperty> findInferredProperties( List<PsiMethod> methods )
   {
     Map<String, Set<PropAttrs>> fromGetter = new HashMap<>();
     Map<String, Set<PropAttrs>> fromSetter = new HashMap<>();
-    for( PsiMethod psiMethod : getMethodsForClass( psiClass ) )
+    for( PsiMethod psiMethod : methods )
     {
       gatherCandidates( psiMethod, fromGetter, fromSetter );
     }
 
-    handleVars( fromGetter, fromSetter );
-    handleVals( fromGetter, fromSetter );
-    handleWos( fromGetter, fromSetter );
+    List<InferredProperty> inferred = new ArrayList<>();
+    handleVars( fromGetter, fromSetter, inferred );
+    handleVals( fromGetter, fromSetter, inferred );
+    handleWos( fromGetter, fromSetter, inferred );
+    return inferred;
+  }
+
+  /**
+   * The properties inferred from a compiled class depend only on the class file, so they are shared for the session.
+   * The key has the project and the library root, since extension methods and library versions differ per project,
+   * and the time stamps and length of the class file and its jar instead of its content. Classes having extension
+   * methods are excluded, since those accessors come from the project.
+   *
+   * @return A key made from the project, the library root, the class name and the class file's time stamps, or null if
+   * {@code psiClass} is not a top-level compiled class or if it has extension methods
+   */
+  @Nullable
+  private static String makeLibraryKey( PsiExtensibleClass psiClass, List<PsiMethod> methods )
+  {
+    if( !(psiClass instanceof ClsClassImpl) || psiClass.getContainingClass() != null ||
+      methods.size() != psiClass.getOwnMethods().size() )
+    {
+      return null;
+    }
+
+    PsiFile psiFile = psiClass.getContainingFile();
+    VirtualFile classFile = psiFile == null ? null : psiFile.getVirtualFile();
+    if( classFile == null )
+    {
+      return null;
+    }
+
+    VirtualFile root = VfsUtilCore.getRootFile( classFile );
+    // a jar rebuilt with fixed entry time stamps still changes the jar file's
+    VirtualFile jar = VfsUtilCore.getVirtualFileForJar( classFile );
+    return psiClass.getProject().getLocationHash() + '#' + root.getUrl() + '#' +
+      (jar == null ? 0 : jar.getTimeStamp()) + '#' + psiClass.getQualifiedName() + '#' +
+      classFile.getTimeStamp() + '#' + classFile.getLength();
+  }
+
+  /**
+   * A hash of what property inference in a subclass observes of {@code psiClass}: its fields, its accessor methods, and
+   * their types and modifiers. It is cached with the class's file, but editing a method body does not change it.
+   */
+  static long getDeclaredAccessorsHash( PsiClass psiClass )
+  {
+    return CachedValuesManager.getCachedValue( psiClass, () ->
+      CachedValueProvider.Result.create( computeDeclaredAccessorsHash( psiClass ), psiClass ) );
+  }
+
+  private static long computeDeclaredAccessorsHash( PsiClass psiClass )
+  {
+    if( !(psiClass instanceof PsiExtensibleClass) )
+    {
+      return 0;
+    }
+
+    long hash = Objects.hash( psiClass.getQualifiedName(), psiClass.isInterface() );
+    for( PsiField field : ((PsiExtensibleClass)psiClass).getOwnFields() )
+    {
+      hash = 31 * hash + Objects.hash( field.getName(), field.getType().getCanonicalText(),
+        hashModifiers( field.getModifierList() ) );
+    }
+    for( PsiMethod m : ((PsiExtensibleClass)psiClass).getOwnMethods() )
+    {
+      if( m.hasAnnotation( propgen.class.getTypeName() ) ||
+        derivePropertyNameFromGetter( m ) != null || derivePropertyNameFromSetter( m ) != null )
+      {
+        PsiType returnType = m.getReturnType();
+        hash = 31 * hash + Objects.hash( m.getName(), returnType == null ? null : returnType.getCanonicalText(),
+          hashModifiers( m.getModifierList() ) );
+        for( PsiParameter param : m.getParameterList().getParameters() )
+        {
+          hash = 31 * hash + param.getType().getCanonicalText().hashCode();
+        }
+      }
+    }
+    return hash;
+  }
+
+  private static int hashModifiers( PsiModifierList modifierList )
+  {
+    if( modifierList == null )
+    {
+      return 0;
+    }
+
+    int hash = 0;
+    for( String modifier : PsiModifier.MODIFIERS )
+    {
+      hash = 31 * hash + (modifierList.hasExplicitModifier( modifier ) ? 1 : 0);
+    }
+    for( PsiAnnotation annotation : modifierList.getAnnotations() )
+    {
+      hash = 31 * hash + annotation.getText().hashCode();
+    }
+    return hash;
   }
 
   @NotNull
@@ -96,7 +235,7 @@ class PropertyInference
     return methods;
   }
 
-  private void gatherCandidates( PsiMethod m, Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
+  private static void gatherCandidates( PsiMethod m, Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
   {
     PsiAnnotation propgenAnno = m.getAnnotation( propgen.class.getTypeName() );
     if( propgenAnno != null )
@@ -145,7 +284,8 @@ class PropertyInference
     return false;
   }
 
-  private void handleVars( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
+  private static void handleVars( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter,
+                                 List<InferredProperty> inferred )
   {
     outer:
     for( Map.Entry<String, Set<PropAttrs>> entry : fromGetter.entrySet() )
@@ -166,7 +306,7 @@ class PropertyInference
             if( setType.isAssignableFrom( getType ) &&
               getAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) == setAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) )
             {
-              makeVar( getAttr, setAttr );
+              inferred.add( new InferredProperty( var.class, getAttr, setAttr ) );
               getterIter.remove();
               setterIter.remove();
               continue outer;
@@ -193,7 +333,7 @@ class PropertyInference
                 if( getType.isAssignableFrom( setType ) &&
                   getAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) == setAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) )
                 {
-                  makeVar( getAttr, setAttr );
+                  inferred.add( new InferredProperty( var.class, getAttr, setAttr ) );
                   getterIter.remove();
                   setterIter.remove();
                   continue outer;
@@ -206,12 +346,13 @@ class PropertyInference
     }
   }
 
-  private boolean isIsProperty( String name )
+  private static boolean isIsProperty( String name )
   {
     return name.length() > 2 && name.startsWith( "is" ) && Character.isUpperCase( name.charAt( 2 ) );
   }
 
-  private void handleVals( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
+  private static void handleVals( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter,
+                                 List<InferredProperty> inferred )
   {
     for( Map.Entry<String, Set<PropAttrs>> entry : fromGetter.entrySet() )
     {
@@ -222,13 +363,14 @@ class PropertyInference
         Set<PropAttrs> setters = fromSetter.get( name );
         if( setters == null || setters.isEmpty() )
         {
-          makeVal( getters.iterator().next() );
+          inferred.add( new InferredProperty( val.class, getters.iterator().next(), null ) );
         }
       }
     }
   }
 
-  private void handleWos( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
+  private static void handleWos( Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter,
+                                 List<InferredProperty> inferred )
   {
     for( Map.Entry<String, Set<PropAttrs>> entry : fromSetter.entrySet() )
     {
@@ -239,7 +381,7 @@ class PropertyInference
         Set<PropAttrs> getters = fromGetter.get( name );
         if( getters == null || getters.isEmpty() )
         {
-          makeWo( setters.iterator().next() );
+          inferred.add( new InferredProperty( set.class, null, setters.iterator().next() ) );
         }
       }
     }
@@ -571,6 +713,102 @@ class PropertyInference
     return null;
   }
 
+  /**
+   * A property inferred from its getter and/or setter, {@code _varClass} is one of var, val, or set
+   */
+  private static class InferredProperty
+  {
+    private final Class<? extends Annotation> _varClass;
+    private final PropAttrs _getter;
+    private final PropAttrs _setter;
+
+    private InferredProperty( Class<? extends Annotation> varClass, PropAttrs getter, PropAttrs setter )
+    {
+      _varClass = varClass;
+      _getter = getter;
+      _setter = setter;
+    }
+
+    private void make( PropertyInference pi )
+    {
+      if( _varClass == var.class )
+      {
+        pi.makeVar( _getter, _setter );
+      }
+      else if( _varClass == val.class )
+      {
+        pi.makeVal( _getter );
+      }
+      else
+      {
+        pi.makeWo( _setter );
+      }
+    }
+  }
+
+  /**
+   * An {@link InferredProperty} of a compiled class without PSI, the accessors are indexes of the class's methods
+   */
+  static class LibraryProperty
+  {
+    private final Class<? extends Annotation> _varClass;
+    private final int _getter;
+    private final String _getterPrefix;
+    private final String _getterName;
+    private final int _setter;
+    private final String _setterPrefix;
+    private final String _setterName;
+
+    private LibraryProperty( InferredProperty prop, Map<PsiMethod, Integer> indexes )
+    {
+      _varClass = prop._varClass;
+      _getter = prop._getter == null ? -1 : indexes.get( prop._getter._m );
+      _getterPrefix = prop._getter == null ? null : prop._getter._prefix;
+      _getterName = prop._getter == null ? null : prop._getter._name;
+      _setter = prop._setter == null ? -1 : indexes.get( prop._setter._m );
+      _setterPrefix = prop._setter == null ? null : prop._setter._prefix;
+      _setterName = prop._setter == null ? null : prop._setter._name;
+    }
+
+    static List<LibraryProperty> from( List<InferredProperty> inferred, List<PsiMethod> methods )
+    {
+      Map<PsiMethod, Integer> indexes = new IdentityHashMap<>();
+      for( int i = 0; i < methods.size(); i++ )
+      {
+        indexes.put( methods.get( i ), i );
+      }
+      List<LibraryProperty> result = new ArrayList<>( inferred.size() );
+      for( InferredProperty prop : inferred )
+      {
+        result.add( new LibraryProperty( prop, indexes ) );
+      }
+      return result;
+    }
+
+    static List<InferredProperty> to( List<LibraryProperty> libraryProps, List<PsiMethod> methods )
+    {
+      List<InferredProperty> result = new ArrayList<>( libraryProps.size() );
+      for( LibraryProperty prop : libraryProps )
+      {
+        PropAttrs getter = null;
+        if( prop._getter >= 0 )
+        {
+          PsiMethod m = methods.get( prop._getter );
+          getter = new PropAttrs( prop._getterPrefix, prop._getterName, m.getReturnType(), m );
+        }
+        PropAttrs setter = null;
+        if( prop._setter >= 0 )
+        {
+          PsiMethod m = methods.get( prop._setter );
+          //noinspection ConstantConditions
+          setter = new PropAttrs( prop._setterPrefix, prop._setterName, m.getParameterList().getParameter( 0 ).getType(), m );
+        }
+        result.add( new InferredProperty( prop._varClass, getter, setter ) );
+      }
+      return result;
+    }
+  }
+
   static class PropAttrs
   {
     String _prefix;
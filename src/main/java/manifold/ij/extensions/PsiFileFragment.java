@@ -22,20 +22,22 @@ package manifold.ij.extensions;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.PsiBuilderFactory;
 import com.intellij.openapi.application.AccessToken;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiJavaFile;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import manifold.api.fs.IFileFragment;
 import manifold.api.fs.def.FileFragmentImpl;
 import manifold.api.type.ITypeManifold;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
+import manifold.ij.util.FP64;
 import manifold.ij.util.FileUtil;
-import manifold.ij.util.ReparseUtil;
-import manifold.ij.util.SlowOperationsUtil;
 import manifold.internal.javac.FragmentProcessor;
 import manifold.internal.javac.HostKind;
 
@@ -44,6 +46,12 @@ import static manifold.api.type.ContributorKind.Supplemental;
 
 interface PsiFileFragment extends ASTNode, PsiElement
 {
+  /**
+   * The fragments last processed in a file, by fingerprint of the fragment's header and content
+   */
+  Key<Map<Long, ProcessedFragment>> KEY_PROCESSED_FRAGMENTS = Key.create( "KEY_PROCESSED_FRAGMENTS" );
+  int MAX_PROCESSED_FRAGMENTS = 256;
+
   IFileFragment getFragment();
 
   void setFragment( IFileFragment fragment );
@@ -54,21 +62,29 @@ interface PsiFileFragment extends ASTNode, PsiElement
   {
     handleFragments( null );
   }
+
+  /**
+   * @param containingFile Null when tokenizing, in which case nothing is done if the fragment is unchanged since it was
+   *   last processed in the file. Otherwise, the fragment is always processed e.g., to put it back in manifold's file
+   *   cache, see {@link FragmentCache#shakeBake}.
+   */
   default void handleFragments( PsiJavaFile containingFile )
   {
-    if( !getText().contains( FragmentProcessor.FRAGMENT_START ) ||
-      !getText().contains( FragmentProcessor.FRAGMENT_END ) )
+    String hostText = getText();
+    if( !hostText.contains( FragmentProcessor.FRAGMENT_START ) ||
+      !hostText.contains( FragmentProcessor.FRAGMENT_END ) )
     {
       // not a fragment
       return;
     }
 
-    if( getText().contains( "IntellijIdeaRulezzz" ) )
+    if( hostText.contains( "IntellijIdeaRulezzz" ) )
     {
       // from completion, ignore this change
       return;
     }
 
+    boolean force = containingFile != null;
     if( containingFile == null )
     {
       // containingFile is null when tokenizing
@@ -87,9 +103,19 @@ interface PsiFileFragment extends ASTNode, PsiElement
       }
     }
 
-    String hostText = getText();
-    FragmentProcessor fragmentProcessor = FragmentProcessor.instance();
     HostKind style = getStyle();
+    long fingerprint = new FP64( hostText ).extend( style.ordinal() ).getRawFingerprint();
+    Map<Long, ProcessedFragment> processedFragments = getProcessedFragments( containingFile );
+    ProcessedFragment processed = processedFragments.get( fingerprint );
+    if( processed != null && !force )
+    {
+      // Same header and content as last time, the type system already has this fragment. This element replaces the one
+      // the fragment was created from, so just repoint the fragment, no need to refresh types or rerun annotators.
+      processed.setHost( this );
+      return;
+    }
+
+    FragmentProcessor fragmentProcessor = FragmentProcessor.instance();
     FragmentProcessor.Fragment f = fragmentProcessor.parseFragment( 0, hostText, style );
     if( f != null )
     {
@@ -123,24 +149,33 @@ interface PsiFileFragment extends ASTNode, PsiElement
       // be current.
       FragmentCache.instance().add( psiFileFragmentPointer );
 
-      PsiJavaFile finalContainingFile = containingFile;
-      // note, this must be posted to the event thread so as not to hold this element's lock while indirectly accessing
-      // ManifoldPsiClassCache's monitor, otherwise deadlock will result
-      ApplicationManager.getApplication().invokeLater( () ->
-        ApplicationManager.getApplication().runReadAction( () -> {
-          // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
-          SlowOperationsUtil.allowSlowOperation( "manifold.fragments", () -> {
-              deletedFragment( ManProject.manProjectFrom( finalContainingFile.getProject() ), fragment );
-              createdFragment( ManProject.manProjectFrom( finalContainingFile.getProject() ), fragment );
-            } );
-        } ) );
-//todo: need to do this, but it bogs down the editor's background processing, cpu fan is constant, takes a while to finish error feedback traffic light, etc.
-      if( this instanceof ManDefaultASTFactoryImpl.ManPsiCommentImpl )
+      // forget older versions of this fragment
+      processedFragments.values().removeIf( p -> p._fragment.getName().equals( fragment.getName() ) );
+      if( processedFragments.size() >= MAX_PROCESSED_FRAGMENTS )
       {
-        // necessary when renaming a file fragment's type
-        ReparseUtil.instance().rerunAnnotators( containingFile );
+        processedFragments.clear();
       }
+      processedFragments.put( fingerprint, new ProcessedFragment( fragment, f.getOffset() ) );
+
+      // note, the refresh is queued so as not to hold this element's lock while indirectly accessing
+      // ManifoldPsiClassCache's monitor, otherwise deadlock will result
+      // For a comment, highlighting of the host file is rerun after the refresh, necessary when renaming a file
+      // fragment's type. Likewise when forced e.g., the fragment is found in the index, since references to its type
+      // in the host file did not resolve so far.
+      FragmentCache.instance().queueRefresh( containingFile, fragment,
+        force || this instanceof ManDefaultASTFactoryImpl.ManPsiCommentImpl ? psiFileFragmentPointer : null );
+    }
+  }
+
+  private static Map<Long, ProcessedFragment> getProcessedFragments( PsiJavaFile containingFile )
+  {
+    Map<Long, ProcessedFragment> processedFragments = containingFile.getUserData( KEY_PROCESSED_FRAGMENTS );
+    if( processedFragments == null )
+    {
+      processedFragments = ((UserDataHolderEx)containingFile)
+        .putUserDataIfAbsent( KEY_PROCESSED_FRAGMENTS, new ConcurrentHashMap<>() );
     }
+    return processedFragments;
   }
 
   default void createdFragment( ManProject project, IFileFragment file )
@@ -162,4 +197,25 @@ interface PsiFileFragment extends ASTNode, PsiElement
   {
     return ASTNode.super.getStartOffsetInParent();
   }
+
+  final class ProcessedFragment
+  {
+    private final FileFragmentImpl _fragment;
+    private final int _offsetInHost;
+
+    private ProcessedFragment( FileFragmentImpl fragment, int offsetInHost )
+    {
+      _fragment = fragment;
+      _offsetInHost = offsetInHost;
+    }
+
+    private void setHost( PsiFileFragment host )
+    {
+      host.setFragment( _fragment );
+      MaybeSmartPsiElementPointer<PsiFileFragment> psiFileFragmentPointer = new MaybeSmartPsiElementPointer<>( host );
+      _fragment.setContainer( psiFileFragmentPointer );
+      _fragment.setOffset( () -> host.getStartOffset() + _offsetInHost );
+      FragmentCache.instance().add( psiFileFragmentPointer );
+    }
+  }
 }
@@ -58,6 +58,8 @@ import com.intellij.psi.impl.source.PsiJavaFileImpl;
 import com.intellij.psi.impl.source.resolve.FileContextUtil;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.util.Query;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -65,7 +67,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import manifold.api.fs.IFile;
@@ -158,9 +162,36 @@ public class ResourceToManifoldUtil
       return Collections.emptySet();
     }
 
+    PsiFile resourceFile = element.getContainingFile();
+    ManProject manProject = resourceFile == null ? null : ManProject.manProjectFrom( resourceFile.getProject() );
+    if( resourceFile == null || !resourceFile.isPhysical() || manProject == null || manProject.getPsiClassCache() == null ||
+      resourceFile instanceof PsiPlainTextFile )
+    {
+      // plain text elements are faked from the caret position, not cacheable
+      return computeJavaElementsFor( element );
+    }
+
+    // Find Usages, rename, and use-scope enlargement ask for the same elements over and over, cache the mapping per
+    // resource file. It is stale when the file changes or when the generated classes are refreshed.
+    Map<PsiElement, Set<PsiModifierListOwner>> mappings = CachedValuesManager.getCachedValue( resourceFile, () ->
+      CachedValueProvider.Result.create( new ConcurrentHashMap<>(), resourceFile,
+        manProject.getPsiClassCache().getModificationTracker() ) );
+    // not computeIfAbsent(), the reference search below can reenter here for other elements in the file
+    Set<PsiModifierListOwner> result = mappings.get( element );
+    if( result == null )
+    {
+      result = Collections.unmodifiableSet( computeJavaElementsFor( element ) );
+      mappings.put( element, result );
+    }
+    return result;
+  }
+
+  private static Set<PsiModifierListOwner> computeJavaElementsFor( @NotNull PsiElement element )
+  {
     // wrapping call in allowSlowOperations(), otherwise IJ throws an exception about slowness, can't make it faster or perform in background for now
     return SlowOperationsUtil.allowSlowOperation( "manifold.generic", () -> findJavaElementsFor( element, new HashSet<>() ) );
   }
+
   private static Set<PsiModifierListOwner> findJavaElementsFor( @NotNull PsiElement element, Set<PsiElement> visited )
   {
     if( visited.contains( element ) )
@@ -500,7 +531,30 @@ public class ResourceToManifoldUtil
   private static List<PsiModifierListOwner> findJavaElementsFor( PsiClass psiClass, IFile file, PsiElement element )
   {
     psiClass.putUserData( KEY_FEATURE_PATH, null );
-    return findJavaElementsFor( psiClass, file, element, new FeaturePath( psiClass ) );
+    if( element instanceof PsiClass )
+    {
+      // members may also match by @TypeReference, which is not indexed
+      return findJavaElementsFor( psiClass, file, element, new FeaturePath( psiClass ) );
+    }
+
+    String targetFeatureName = element.getText();
+    if( targetFeatureName == null || targetFeatureName.isEmpty() )
+    {
+      return Collections.emptyList();
+    }
+
+    int textOffset = getSourceOffset( file, element );
+    List<PsiModifierListOwner> result = new ArrayList<>();
+    for( SourcePositionIndex.Entry entry: SourcePositionIndex.get( psiClass ).find( textOffset, textOffset + getSourceLength( element ) ) )
+    {
+      if( entry.matchesFeature( element ) )
+      {
+        PsiModifierListOwner member = entry.getMember();
+        result.add( member );
+        member.putUserData( KEY_FEATURE_PATH, entry.getPath() );
+      }
+    }
+    return result;
   }
 
   private static List<PsiModifierListOwner> findJavaElementsFor( PsiClass psiClass, IFile file, PsiElement element, FeaturePath parent )
@@ -568,15 +622,8 @@ public class ResourceToManifoldUtil
     PsiAnnotation annotation = modifierListOwner.getModifierList().findAnnotation( SourcePosition.class.getName() );
     if( annotation != null )
     {
-      int textOffset = 0;
-      if( file instanceof IFileFragment )
-      {
-        textOffset = ((IFileFragment)file).getOffset();
-      }
-      textOffset += element.getTextOffset();
-      int textLength = element instanceof PsiNamedElement && ((PsiNamedElement)element).getName() != null
-                       ? ((PsiNamedElement)element).getName().length()
-                       : element.getTextLength();
+      int textOffset = getSourceOffset( file, element );
+      int textLength = getSourceLength( element );
       PsiNameValuePair[] attributes = annotation.getParameterList().getAttributes();
       int offset = -1;
       for( PsiNameValuePair pair : attributes )
@@ -615,7 +662,28 @@ public class ResourceToManifoldUtil
     return false;
   }
 
-  private static boolean featureNameMatches( PsiClass declaringClass, PsiElement element, String featureName )
+  /**
+   * @return The offset of {@code element} in the source file of {@code file}, which is also the offset a {@link SourcePosition}
+   * would have
+   */
+  private static int getSourceOffset( IFile file, PsiElement element )
+  {
+    int textOffset = 0;
+    if( file instanceof IFileFragment )
+    {
+      textOffset = ((IFileFragment)file).getOffset();
+    }
+    return textOffset + element.getTextOffset();
+  }
+
+  private static int getSourceLength( PsiElement element )
+  {
+    return element instanceof PsiNamedElement && ((PsiNamedElement)element).getName() != null
+           ? ((PsiNamedElement)element).getName().length()
+           : element.getTextLength();
+  }
+
+  static boolean featureNameMatches( PsiClass declaringClass, PsiElement element, String featureName )
   {
     return featureName != null &&
            (featureName.equals( element.getText() ) ||
@@ -20,10 +20,15 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.jvm.annotation.JvmAnnotationConstantValue;
+import com.intellij.openapi.util.Key;
 import com.intellij.psi.*;
 import com.intellij.psi.impl.source.PsiClassReferenceType;
 import com.intellij.psi.impl.source.PsiImmediateClassType;
 import com.intellij.psi.impl.source.tree.java.PsiReferenceExpressionImpl;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTypesUtil;
 import com.intellij.refactoring.util.RefactoringChangeUtil;
 import com.intellij.util.ArrayUtil;
@@ -34,12 +39,61 @@ import org.jetbrains.annotations.NotNull;
 public class SelfTypeUtil
 {
   private static final SelfTypeUtil INSTANCE = new SelfTypeUtil();
+  static final Key<CachedValue<Long>> KEY_SELF_TYPE_POSITIONS = Key.create( "KEY_SELF_TYPE_POSITIONS" );
+
+  /** Self type position of a method's return type, parameter {@code i} is at position {@code i + 1} */
+  static final int RETURN_POSITION = 0;
+  /** Parameters past this position share its bit */
+  private static final int LAST_POSITION = Long.SIZE - 1;
 
   public static SelfTypeUtil instance()
   {
     return INSTANCE;
   }
 
+  /**
+   * A bitmap of the types in {@code method}'s signature having {@code @Self}, see {@link #isSelfPosition(long, int)}.
+   * The bitmap is cached on the method, so resolving a call to a method without self types, the common case, does not
+   * walk its types again.
+   *
+   * @return Zero if the method has no self types
+   */
+  long getSelfTypePositions( PsiMethod method )
+  {
+    return CachedValuesManager.getCachedValue( method, KEY_SELF_TYPE_POSITIONS, () -> {
+      return CachedValueProvider.Result.create( computeSelfTypePositions( method ),
+        method.isPhysical() ? method : PsiModificationTracker.MODIFICATION_COUNT );
+    } );
+  }
+
+  private long computeSelfTypePositions( PsiMethod method )
+  {
+    long positions = 0;
+    if( hasSelfAnnotation( method.getReturnType() ) )
+    {
+      positions |= 1L << RETURN_POSITION;
+    }
+    PsiParameter[] parameters = method.getParameterList().getParameters();
+    for( int i = 0; i < parameters.length; i++ )
+    {
+      if( hasSelfAnnotation( parameters[i].getType() ) )
+      {
+        positions |= 1L << Math.min( i + 1, LAST_POSITION );
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * @param positions A bitmap from {@link #getSelfTypePositions(PsiMethod)}
+   * @param position {@link #RETURN_POSITION} or a parameter's index + 1
+   * @return True if the type at {@code position} may have {@code @Self}
+   */
+  static boolean isSelfPosition( long positions, int position )
+  {
+    return (positions & (1L << Math.min( position, LAST_POSITION ))) != 0;
+  }
+
   PsiType handleSelfType2( PsiType type, PsiType exprType, PsiReferenceExpression methodExpression )
   {
     if( !hasSelfAnnotation( type ) )
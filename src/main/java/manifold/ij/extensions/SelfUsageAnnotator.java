@@ -20,7 +20,6 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.annotation.AnnotationHolder;
-import com.intellij.lang.annotation.Annotator;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.lang.jvm.JvmModifier;
 import com.intellij.psi.JavaPsiFacade;
@@ -48,22 +47,25 @@ import manifold.ExtIssueMsg;
 import manifold.ext.rt.api.Self;
 import manifold.ext.rt.api.This;
 import manifold.ext.rt.api.ThisClass;
-import manifold.ij.core.ManProject;
 import org.jetbrains.annotations.NotNull;
 
 
 import static com.intellij.refactoring.util.RefactoringUtil.getEnclosingMethod;
 
-public class SelfUsageAnnotator implements Annotator
+public class SelfUsageAnnotator implements ManJavaAnnotationHandler
 {
+  private static final List<Class<? extends PsiElement>> ELEMENT_TYPES = List.of(
+    PsiAnnotation.class );
+
   @Override
-  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder )
+  public List<Class<? extends PsiElement>> getElementTypes()
   {
-    if( !ManProject.isManifoldInUse( element ) )
-    {
-      return;
-    }
+    return ELEMENT_TYPES;
+  }
 
+  @Override
+  public void annotate( @NotNull PsiElement element, @NotNull AnnotationHolder holder, @NotNull ManJavaAnnotatorContext context )
+  {
     if( !(element instanceof PsiAnnotation) )
     {
       return;
@@ -0,0 +1,215 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifierList;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiNameValuePair;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import manifold.ij.psi.ManLightFieldBuilder;
+import manifold.rt.api.SourcePosition;
+
+/**
+ * Indexes the members of a generated class, including the members of its inner classes, by the resource file offset
+ * of their {@link SourcePosition}. Mapping a resource element to its Java members is then a binary search over the
+ * offsets instead of a walk reading the annotation of every member.
+ * <p/>
+ * The index is cached with the class, which is replaced when its resource file changes. Since augmented members e.g.,
+ * extension methods, come and go with other files, it is also rebuilt after PSI changes.
+ */
+class SourcePositionIndex
+{
+  private final Entry[] _entries;
+
+  static SourcePositionIndex get( PsiClass psiClass )
+  {
+    return CachedValuesManager.getCachedValue( psiClass, () ->
+      CachedValueProvider.Result.create( new SourcePositionIndex( psiClass ), PsiModificationTracker.MODIFICATION_COUNT ) );
+  }
+
+  private SourcePositionIndex( PsiClass psiClass )
+  {
+    List<Entry> entries = new ArrayList<>();
+    FeaturePath root = new FeaturePath( psiClass );
+    addEntry( entries, psiClass, psiClass, FeaturePath.make( root, FeaturePath.FeatureType.Class, 0, 1 ) );
+    addMembers( entries, psiClass, root );
+    entries.sort( Comparator.comparingInt( entry -> entry._offset ) );
+    _entries = entries.toArray( new Entry[0] );
+  }
+
+  private static void addMembers( List<Entry> entries, PsiClass psiClass, FeaturePath parent )
+  {
+    PsiMethod[] methods = psiClass.getMethods();
+    for( int i = 0; i < methods.length; i++ )
+    {
+      addEntry( entries, psiClass, methods[i], FeaturePath.make( parent, FeaturePath.FeatureType.Method, i, methods.length ) );
+    }
+
+    PsiField[] fields = psiClass.getFields();
+    for( int i = 0; i < fields.length; i++ )
+    {
+      addEntry( entries, psiClass, fields[i], FeaturePath.make( parent, FeaturePath.FeatureType.Field, i, fields.length ) );
+    }
+
+    PsiClass[] inners = psiClass.getInnerClasses();
+    for( int i = 0; i < inners.length; i++ )
+    {
+      PsiClass inner = inners[i];
+      // the inner class declares itself, its feature name may be qualified with its own name or any enclosing name
+      addEntry( entries, inner, inner, FeaturePath.make( parent, FeaturePath.FeatureType.Class, i, inners.length ) );
+      addMembers( entries, inner, new FeaturePath( parent, FeaturePath.FeatureType.Class, i, inners.length ) );
+    }
+  }
+
+  private static void addEntry( List<Entry> entries, PsiClass declaringClass, PsiModifierListOwner member, FeaturePath path )
+  {
+    PsiAnnotation annotation = findSourcePosition( member );
+    if( annotation == null )
+    {
+      return;
+    }
+
+    int offset = -1;
+    boolean hasFeature = false;
+    String feature = null;
+    for( PsiNameValuePair pair: annotation.getParameterList().getAttributes() )
+    {
+      if( pair.getNameIdentifier() == null )
+      {
+        continue;
+      }
+      String name = pair.getNameIdentifier().getText();
+      if( name.equals( SourcePosition.OFFSET ) )
+      {
+        String literalValue = pair.getLiteralValue();
+        if( literalValue == null )
+        {
+          return;
+        }
+        offset = Integer.parseInt( literalValue );
+      }
+      else if( name.equals( SourcePosition.FEATURE ) )
+      {
+        hasFeature = true;
+        feature = pair.getLiteralValue();
+      }
+    }
+
+    if( offset >= 0 )
+    {
+      entries.add( new Entry( offset, member, declaringClass, hasFeature, feature, path ) );
+    }
+  }
+
+  private static PsiAnnotation findSourcePosition( PsiModifierListOwner member )
+  {
+    PsiModifierList modifierList = member.getModifierList();
+    PsiAnnotation annotation = modifierList == null ? null : modifierList.findAnnotation( SourcePosition.class.getName() );
+    if( annotation == null && member instanceof ManLightFieldBuilder )
+    {
+      // for properties (manifold-props)
+      PsiElement navElem = member.getNavigationElement();
+      if( navElem != member && navElem instanceof PsiModifierListOwner )
+      {
+        return findSourcePosition( (PsiModifierListOwner)navElem );
+      }
+    }
+    return annotation;
+  }
+
+  /**
+   * @return The entries having offsets within {@code start} and {@code end}, inclusive
+   */
+  List<Entry> find( int start, int end )
+  {
+    int low = 0;
+    int high = _entries.length;
+    while( low < high )
+    {
+      int mid = (low + high) >>> 1;
+      if( _entries[mid]._offset < start )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid;
+      }
+    }
+
+    if( low == _entries.length || _entries[low]._offset > end )
+    {
+      return Collections.emptyList();
+    }
+    List<Entry> result = new ArrayList<>();
+    for( int i = low; i < _entries.length && _entries[i]._offset <= end; i++ )
+    {
+      result.add( _entries[i] );
+    }
+    return result;
+  }
+
+  static class Entry
+  {
+    private final int _offset;
+    private final PsiModifierListOwner _member;
+    private final PsiClass _declaringClass;
+    private final boolean _hasFeature;
+    private final String _feature;
+    private final FeaturePath _path;
+
+    private Entry( int offset, PsiModifierListOwner member, PsiClass declaringClass, boolean hasFeature, String feature,
+                   FeaturePath path )
+    {
+      _offset = offset;
+      _member = member;
+      _declaringClass = declaringClass;
+      _hasFeature = hasFeature;
+      _feature = feature;
+      _path = path;
+    }
+
+    PsiModifierListOwner getMember()
+    {
+      return _member;
+    }
+
+    FeaturePath getPath()
+    {
+      return _path;
+    }
+
+    boolean matchesFeature( PsiElement element )
+    {
+      return !_hasFeature || ResourceToManifoldUtil.featureNameMatches( _declaringClass, element, _feature );
+    }
+  }
+}
@@ -23,21 +23,29 @@ import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
 import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.fileEditor.impl.EditorHistoryManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.util.SimpleModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiInvalidElementAccessException;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.FileContentUtil;
 import com.intellij.util.FileContentUtilCore;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import manifold.ij.core.ManProject;
+import manifold.ij.extensions.ManPreprocessorSymbolIndex;
+import manifold.ij.extensions.ManTokenListCache;
 import manifold.util.concurrent.ConcurrentHashSet;
 import org.jetbrains.annotations.NotNull;
 
@@ -52,11 +60,27 @@ public class ReparseUtil
 
   private final Set<Project> _reparsingProjects;
   private final Set<VirtualFile> _repsarsingFiles;
+  private final SimpleModificationTracker _definitionsTracker;
 
   private ReparseUtil()
   {
     _reparsingProjects = new ConcurrentHashSet<>();
     _repsarsingFiles = new ConcurrentHashSet<>();
+    _definitionsTracker = new SimpleModificationTracker();
+  }
+
+  /**
+   * Incremented whenever preprocessor definitions may have changed and files are reparsed as a consequence. Caches of
+   * preprocessor output must not outlive a change in this count.
+   */
+  public long getDefinitionsModificationCount()
+  {
+    return _definitionsTracker.getModificationCount();
+  }
+
+  public void definitionsChanged()
+  {
+    _definitionsTracker.incModificationCount();
   }
 
   public boolean isReparsing( Project project )
@@ -102,6 +126,8 @@ public class ReparseUtil
   }
   public void reparseRecentJavaFiles( @NotNull Project project, boolean force )
   {
+    definitionsChanged();
+
     if( project.isDisposed() )
     {
       return;
@@ -149,6 +175,94 @@ public class ReparseUtil
     }
   }
 
+  /**
+   * Reparse the Java files referencing any of {@code symbols} in a preprocessor directive, whether they are open or not.
+   * Falls back to reparsing recent files while the index is not ready.
+   */
+  public void reparseFilesUsingSymbols( @NotNull Project project, @NotNull Collection<String> symbols )
+  {
+    if( symbols.isEmpty() )
+    {
+      // no definitions changed
+      return;
+    }
+
+    definitionsChanged();
+
+    if( project.isDisposed() )
+    {
+      return;
+    }
+
+    ManProject manProject = ManProject.manProjectFrom( project );
+    if( manProject == null ||
+      !manProject.isPreprocessorEnabledInAnyModules() ||
+      isReparsing( project ) )
+    {
+      // manifold-preprocessor is not used in this project, no need to reparse
+      return;
+    }
+
+    _reparsingProjects.add( project ); // add here to prevent more reparse calls before invokeLater is processed
+    try
+    {
+      ApplicationManager.getApplication().invokeLater(
+        () -> {
+          try
+          {
+            ApplicationManager.getApplication().runReadAction(
+              () -> {
+                if( !project.isDisposed() )
+                {
+                  Collection<? extends VirtualFile> files = DumbService.getInstance( project ).isDumb()
+                    ? getRecentJavaFiles( project ).stream().limit( 25 ).collect( Collectors.toSet() )
+                    : ManPreprocessorSymbolIndex.findFilesUsingSymbols( symbols, GlobalSearchScope.projectScope( project ) );
+                  // except module-info.java files because that causes infinite reset
+                  files = files.stream()
+                    .filter( vf -> !vf.getName().toLowerCase().endsWith( "module-info.java" ) )
+                    .collect( Collectors.toSet() );
+                  if( !files.isEmpty() )
+                  {
+                    FileContentUtil.reparseFiles( project, files, false );
+                  }
+                }
+              } );
+          }
+          finally
+          {
+            _reparsingProjects.remove( project );
+          }
+        } );
+    }
+    catch( Throwable t )
+    {
+      // if invokeLater() throws before it runs
+      _reparsingProjects.remove( project );
+    }
+  }
+
+  /**
+   * @return The symbols added, removed, or having a different value in {@code newDefinitions}
+   */
+  public static Set<String> findChangedSymbols( Map<String, String> oldDefinitions, Map<String, String> newDefinitions )
+  {
+    Set<String> allSymbols = new HashSet<>( newDefinitions.keySet() );
+    allSymbols.addAll( oldDefinitions.keySet() );
+    Set<String> changed = new HashSet<>();
+    for( String symbol: allSymbols )
+    {
+      if( !Objects.equals( oldDefinitions.get( symbol ), newDefinitions.get( symbol ) ) )
+      {
+        changed.add( symbol );
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Reparse a single file e.g., when it is opened. The file is lexed again, token lists cached for it are dropped since
+   * the environment may have changed while it was closed, but token lists cached for other files remain valid.
+   */
   public void reparseFile( @NotNull Project project, @NotNull VirtualFile file )
   {
     if( isReparsing( project ) || isReparsing( file ) )
@@ -167,6 +281,7 @@ public class ReparseUtil
               () -> {
                 if( !project.isDisposed() )
                 {
+                  ManTokenListCache.instance().invalidate( file );
                   FileContentUtilCore.reparseFiles( file );
                 }
               } );
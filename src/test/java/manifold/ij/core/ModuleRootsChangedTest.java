@@ -0,0 +1,72 @@
+package manifold.ij.core;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.module.JavaModuleType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.roots.ModuleRootModificationUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PsiTestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class ModuleRootsChangedTest extends AbstractManifoldCodeInsightTest
+{
+  public void testDependencyChangeRebuildsOnlyAffectedModules()
+  {
+    List<Module> modules = new ArrayList<>();
+    try
+    {
+      // 100 modules, module i depends on module i-1 for i % 10 != 0, so there are ten chains of ten
+      for( int i = 0; i < 100; i++ )
+      {
+        VirtualFile root = myFixture.getTempDirFixture().findOrCreateDir( "m" + i );
+        Module module = PsiTestUtil.addModule( getProject(), JavaModuleType.getModuleType(), "m" + i, root );
+        if( i % 10 != 0 )
+        {
+          ModuleRootModificationUtil.addDependency( module, modules.get( i - 1 ) );
+        }
+        modules.add( module );
+      }
+
+      List<ManModule> before = new ArrayList<>();
+      modules.forEach( m -> before.add( ManProject.getModule( m ) ) );
+
+      // change a dependency of module 15, its chain from 15 through 19 is rebuilt
+      ModuleRootModificationUtil.addDependency( modules.get( 15 ), modules.get( 0 ) );
+      ManProject.manProjectFrom( getProject() ).rootsChanged();
+
+      List<ManModule> after = new ArrayList<>();
+      modules.forEach( m -> after.add( ManProject.getModule( m ) ) );
+
+      int rebuilt = 0;
+      for( int i = 0; i < 100; i++ )
+      {
+        if( before.get( i ) != after.get( i ) )
+        {
+          assertTrue( "m" + i, i >= 15 && i < 20 );
+          rebuilt++;
+        }
+      }
+      assertEquals( 5, rebuilt );
+
+      // nothing changed since, nothing is rebuilt
+      ManProject.manProjectFrom( getProject() ).rootsChanged();
+      for( int i = 0; i < 100; i++ )
+      {
+        assertSame( "m" + i, after.get( i ), ManProject.getModule( modules.get( i ) ) );
+      }
+    }
+    finally
+    {
+      WriteAction.run( () -> {
+        ModuleManager moduleManager = ModuleManager.getInstance( getProject() );
+        for( Module module: modules )
+        {
+          moduleManager.disposeModule( module );
+        }
+      } );
+    }
+  }
+}
@@ -1,13 +1,24 @@
 package manifold.ij.ext;
 
+import com.intellij.codeInsight.daemon.impl.DaemonCodeAnalyzerEx;
 import com.intellij.codeInsight.daemon.impl.HighlightInfo;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.testFramework.EdtTestUtil;
 import com.intellij.testFramework.PlatformTestUtil;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import manifold.api.fs.IFileFragment;
+import manifold.api.host.ITypeSystemListener;
+import manifold.api.host.RefreshRequest;
 import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.core.ManProject;
+import manifold.ij.extensions.FragmentCache;
 
 public class FragmentTest extends AbstractManifoldCodeInsightTest
 {
@@ -20,4 +31,172 @@ public class FragmentTest extends AbstractManifoldCodeInsightTest
 //    List<HighlightInfo> highlightInfos = myFixture.doHighlighting( HighlightSeverity.ERROR );
 //    assertEmpty( highlightInfos );
   }
+
+  public void testEditOutsideFragmentDoesNotRefreshFragment()
+  {
+    myFixture.configureByFile( "ext/fragment/EditOutsideFragment.java" );
+    EdtTestUtil.runInEdtAndWait( () -> PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue() );
+
+    AtomicInteger fragmentRefreshes = new AtomicInteger();
+    ITypeSystemListener listener = new ITypeSystemListener()
+    {
+      @Override
+      public void refreshedTypes( RefreshRequest request )
+      {
+        if( request.file instanceof IFileFragment )
+        {
+          fragmentRefreshes.incrementAndGet();
+        }
+      }
+
+      @Override
+      public void refreshed()
+      {
+      }
+    };
+    ManProject.manProjectFrom( getProject() ).getFileModificationManager().getManRefresher()
+      .addTypeSystemListenerAsWeakRef( listener );
+
+    myFixture.type( " i++;" );
+    EdtTestUtil.runInEdtAndWait( () -> PsiDocumentManager.getInstance( getProject() ).commitAllDocuments() );
+    EdtTestUtil.runInEdtAndWait( () -> PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue() );
+
+    assertEquals( 0, fragmentRefreshes.get() );
+    ManProject.manProjectFrom( getProject() ).getFileModificationManager().getManRefresher()
+      .removeTypeSystemListener( listener );
+  }
+
+  public void testRapidFragmentEditsAreCoalesced()
+  {
+    int count = 200;
+    StringBuilder text = new StringBuilder( "package ext.fragment;\n\npublic class ManyFragments\n{\n" );
+    for( int i = 0; i < count; i++ )
+    {
+      text.append( "  public void fragment" ).append( i ).append( "()\n  {\n" )
+        .append( "    /*[MyProps" ).append( i ).append( ".properties/]\n" )
+        .append( "    foo=bar\n" )
+        .append( "    */\n  }\n" );
+    }
+    text.append( "}\n" );
+    myFixture.configureByText( "ManyFragments.java", text.toString() );
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+    assertEquals( 0, FragmentCache.instance().getRefreshQueueDepth( getProject() ) );
+
+    Document document = myFixture.getEditor().getDocument();
+    for( int round = 0; round < 2; round++ )
+    {
+      // edit every fragment in quick succession
+      for( int i = 0; i < count; i++ )
+      {
+        String header = "[MyProps" + i + ".properties/]";
+        String value = "foo=bar" + round;
+        WriteCommandAction.runWriteCommandAction( getProject(), () -> {
+          String current = document.getText();
+          int fragment = current.indexOf( header );
+          int start = current.indexOf( "foo=", fragment );
+          int end = current.indexOf( '\n', start );
+          document.replaceString( start, end, value );
+          PsiDocumentManager.getInstance( getProject() ).commitDocument( document );
+        } );
+      }
+    }
+
+    // repeated updates of the same fragment are merged
+    assertTrue( FragmentCache.instance().getRefreshQueueDepth( getProject() ) <= count );
+
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+    assertEquals( 0, FragmentCache.instance().getRefreshQueueDepth( getProject() ) );
+  }
+
+  public void testFragmentRefreshRunsOffEventThread()
+  {
+    myFixture.configureByFile( "ext/fragment/EditOutsideFragment.java" );
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+
+    List<Boolean> onEventThread = new CopyOnWriteArrayList<>();
+    ITypeSystemListener listener = new ITypeSystemListener()
+    {
+      @Override
+      public void refreshedTypes( RefreshRequest request )
+      {
+        if( request.file instanceof IFileFragment )
+        {
+          onEventThread.add( ApplicationManager.getApplication().isDispatchThread() );
+        }
+      }
+
+      @Override
+      public void refreshed()
+      {
+      }
+    };
+    ManProject.manProjectFrom( getProject() ).getFileModificationManager().getManRefresher()
+      .addTypeSystemListenerAsWeakRef( listener );
+
+    Document document = myFixture.getEditor().getDocument();
+    myFixture.getEditor().getCaretModel().moveToOffset( document.getText().indexOf( "foo=bar" ) + "foo=bar".length() );
+    myFixture.type( 'x' );
+    PsiDocumentManager.getInstance( getProject() ).commitAllDocuments();
+
+    // the queued refresh is processed after a delay, without flushing the queue
+    PlatformTestUtil.waitWithEventsDispatching( "fragment refresh not processed",
+      () -> FragmentCache.instance().getRefreshQueueDepth( getProject() ) == 0 && !onEventThread.isEmpty(), 10 );
+    assertFalse( onEventThread.contains( true ) );
+
+    ManProject.manProjectFrom( getProject() ).getFileModificationManager().getManRefresher()
+      .removeTypeSystemListener( listener );
+  }
+
+  public void testTypingRestartsHighlightingOnlyForFragmentEdits()
+  {
+    myFixture.configureByFile( "ext/fragment/EditOutsideFragment.java" );
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+    assertFalse( hasErrorAt( "MyProps.hi;" ) );
+    Document document = myFixture.getEditor().getDocument();
+
+    // typing outside the fragment, only the typed text is dirty
+    for( char c : " i++;".toCharArray() )
+    {
+      myFixture.type( c );
+      PsiDocumentManager.getInstance( getProject() ).commitAllDocuments();
+    }
+    TextRange typed = getDirtyScope( document );
+    assertNotNull( typed );
+    assertTrue( typed.getLength() < document.getTextLength() );
+    refreshFragments();
+    assertEquals( typed, getDirtyScope( document ) );
+
+    // typing in the fragment renames the "hi" property, the whole host file is highlighted again
+    myFixture.doHighlighting();
+    myFixture.getEditor().getCaretModel().moveToOffset( document.getText().indexOf( "hi=hello" ) + "hi".length() );
+    for( char c : "gh".toCharArray() )
+    {
+      myFixture.type( c );
+      PsiDocumentManager.getInstance( getProject() ).commitAllDocuments();
+    }
+    refreshFragments();
+    assertEquals( new TextRange( 0, document.getTextLength() ), getDirtyScope( document ) );
+
+    // the reference in the other method no longer resolves
+    assertTrue( hasErrorAt( "MyProps.hi;" ) );
+  }
+
+  private void refreshFragments()
+  {
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+  }
+
+  private TextRange getDirtyScope( Document document )
+  {
+    return DaemonCodeAnalyzerEx.getInstanceEx( getProject() ).getFileStatusMap()
+      .getFileDirtyScopeForAllPassesCombined( document );
+  }
+
+  private boolean hasErrorAt( String text )
+  {
+    int offset = myFixture.getEditor().getDocument().getText().indexOf( text ) + text.indexOf( '.' ) + 1;
+    List<HighlightInfo> errors = myFixture.doHighlighting( HighlightSeverity.ERROR );
+    return errors.stream().anyMatch( info -> info.getStartOffset() <= offset && offset < info.getEndOffset() );
+  }
 }
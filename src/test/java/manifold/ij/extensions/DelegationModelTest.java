@@ -0,0 +1,65 @@
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.impl.source.PsiExtensibleClass;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class DelegationModelTest extends AbstractManifoldCodeInsightTest
+{
+  private static final int LINKS = 20;
+  private static final int METHODS = 30;
+
+  public void testModelSharedByAugmentsAndAnnotator()
+  {
+    StringBuilder impl = new StringBuilder()
+      .append( "package abc;\n" )
+      .append( "import manifold.ext.delegation.rt.api.link;\n" )
+      .append( "public class Wide implements " );
+    for( int i = 0; i < LINKS; i++ )
+    {
+      StringBuilder iface = new StringBuilder()
+        .append( "package abc;\n" )
+        .append( "public interface Face" ).append( i ).append( " {\n" );
+      for( int j = 0; j < METHODS; j++ )
+      {
+        iface.append( "  String m" ).append( i ).append( '_' ).append( j ).append( "( int a, String b );\n" );
+      }
+      iface.append( "}\n" );
+      myFixture.addClass( iface.toString() );
+
+      impl.append( i > 0 ? ", " : "" ).append( "Face" ).append( i );
+    }
+    impl.append( " {\n" );
+    for( int i = 0; i < LINKS; i++ )
+    {
+      impl.append( "  @link Face" ).append( i ).append( " _face" ).append( i ).append( ";\n" );
+    }
+    impl.append( "}\n" );
+    PsiClass wide = myFixture.addClass( impl.toString() );
+
+    ReadAction.run( () -> {
+      for( int i = 0; i < LINKS; i++ )
+      {
+        for( int j = 0; j < METHODS; j++ )
+        {
+          PsiMethod[] methods = wide.findMethodsByName( "m" + i + '_' + j, false );
+          assertEquals( 1, methods.length );
+        }
+      }
+    } );
+
+    myFixture.configureFromExistingVirtualFile( wide.getContainingFile().getVirtualFile() );
+    myFixture.doHighlighting();
+    DelegationMaker.Model model = ReadAction.compute( () -> DelegationMaker.getModel( (PsiExtensibleClass)wide ) );
+
+    // highlighting and member lookups reuse the model until the class or its linked types change
+    for( int i = 0; i < 10; i++ )
+    {
+      myFixture.doHighlighting();
+      ReadAction.run( () -> assertEquals( LINKS * METHODS, wide.getMethods().length ) );
+    }
+    assertSame( model, ReadAction.compute( () -> DelegationMaker.getModel( (PsiExtensibleClass)wide ) ) );
+  }
+}
@@ -0,0 +1,44 @@
+package manifold.ij.extensions;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.module.Module;
+import com.intellij.psi.util.CachedValue;
+import java.util.Set;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class ExtensionMethodCallSiteAnnotatorTest extends AbstractManifoldCodeInsightTest
+{
+  public void testManyExtensionMethodCalls()
+  {
+    // 10k extension method call sites, each is resolved and checked for accessibility from the call-site module
+    StringBuilder text = new StringBuilder( "package ext.highlight;\n\npublic class ManyCalls\n{\n" );
+    for( int i = 0; i < 100; i++ )
+    {
+      text.append( "  void calls" ).append( i ).append( "( java.util.List<String> list )\n  {\n" );
+      for( int j = 0; j < 100; j++ )
+      {
+        text.append( "    String s" ).append( j ).append( " = list.first();\n" );
+      }
+      text.append( "  }\n" );
+    }
+    text.append( "}\n" );
+    myFixture.configureByText( "ManyCalls.java", text.toString() );
+    assertEmpty( myFixture.doHighlighting( HighlightSeverity.ERROR ) );
+
+    // the pass computed the modules visible from the call-site module once, for all the calls
+    Module callSiteModule = getModule();
+    CachedValue<Set<Module>> visible = callSiteModule.getUserData( ManJavaAnnotatorContext.KEY_VISIBLE_MODULES );
+    assertNotNull( visible );
+    assertTrue( visible.hasUpToDateValue() );
+    Set<Module> modules = visible.getValue();
+    assertTrue( modules.contains( callSiteModule ) );
+
+    // the next pass reuses them
+    DaemonCodeAnalyzer.getInstance( getProject() ).restart();
+    assertEmpty( myFixture.doHighlighting( HighlightSeverity.ERROR ) );
+    assertSame( visible, callSiteModule.getUserData( ManJavaAnnotatorContext.KEY_VISIBLE_MODULES ) );
+    assertTrue( visible.hasUpToDateValue() );
+    assertSame( modules, visible.getValue() );
+  }
+}
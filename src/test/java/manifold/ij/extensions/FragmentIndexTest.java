@@ -0,0 +1,94 @@
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.impl.NonBlockingReadActionImpl;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.PlatformTestUtil;
+import java.util.Map;
+import java.util.Set;
+import manifold.api.fs.IFileFragment;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class FragmentIndexTest extends AbstractManifoldCodeInsightTest
+{
+  private static final String HOST =
+    "package ext.fragment;\n" +
+    "\n" +
+    "public class ClosedFragmentHost\n" +
+    "{\n" +
+    "  public void useFragment()\n" +
+    "  {\n" +
+    "    /*[ClosedProps.properties/]\n" +
+    "    foo=bar\n" +
+    "    */\n" +
+    "  }\n" +
+    "}\n";
+
+  public void testCollectFragments()
+  {
+    Map<String, Map<String, Integer>> fragments = ManFileFragmentIndex.collectFragments( HOST );
+    assertEquals( Set.of( "ext.fragment" ), fragments.keySet() );
+    assertEquals( Map.of( "ClosedProps", HOST.indexOf( "[ClosedProps" ) ), fragments.get( "ext.fragment" ) );
+
+    assertTrue( ManFileFragmentIndex.collectFragments( "package abc;\nclass A { int[] a = new int[0]; }" ).isEmpty() );
+  }
+
+  public void testResolveFragmentFromClosedFile()
+  {
+    VirtualFile host = myFixture.addFileToProject( "ext/fragment/ClosedFragmentHost.java", HOST ).getVirtualFile();
+    GlobalSearchScope scope = GlobalSearchScope.projectScope( getProject() );
+
+    assertEquals( Set.of( "ClosedProps" ), ManFileFragmentIndex.findFragmentNames( getProject(), "ext.fragment", scope ) );
+
+    PsiClass psiClass = findClassFromClosedHost( "ext.fragment.ClosedProps", scope );
+    assertNotNull( psiClass );
+    assertFalse( FileEditorManager.getInstance( getProject() ).isFileOpen( host ) );
+  }
+
+  /**
+   * The first lookup of a fragment type whose host file was never parsed misses, since the host is parsed in the
+   * background. It resolves once the fragment is found and the type system is refreshed, also in the background.
+   */
+  private PsiClass findClassFromClosedHost( String fqn, GlobalSearchScope scope )
+  {
+    JavaPsiFacade facade = JavaPsiFacade.getInstance( getProject() );
+    assertNull( facade.findClass( fqn, scope ) );
+    NonBlockingReadActionImpl.waitForAsyncTaskCompletion();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    FragmentCache.instance().flushRefreshQueue( getProject() );
+    return facade.findClass( fqn, scope );
+  }
+
+  public void testRepeatedFragmentTypeLookup()
+  {
+    myFixture.addFileToProject( "ext/fragment/ClosedFragmentHost.java", HOST );
+    GlobalSearchScope scope = GlobalSearchScope.projectScope( getProject() );
+    JavaPsiFacade facade = JavaPsiFacade.getInstance( getProject() );
+
+    PsiClass psiClass = findClassFromClosedHost( "ext.fragment.ClosedProps", scope );
+    assertNotNull( psiClass );
+
+    assertTrue( psiClass instanceof ManifoldPsiClass );
+    IFileFragment fragment = (IFileFragment)((ManifoldPsiClass)psiClass).getFiles().get( 0 );
+    PsiElement host = ((MaybeSmartPsiElementPointer<?>)fragment.getContainer()).getElement();
+    assertNotNull( host );
+    PsiFile hostFile = host.getContainingFile();
+    long refreshes = FragmentCache.instance().getRefreshCount( getProject() );
+
+    // the host is unchanged, each lookup is a cache hit, the fragment is neither parsed nor looked up again
+    for( int i = 0; i < 10_000; i++ )
+    {
+      assertSame( psiClass, facade.findClass( "ext.fragment.ClosedProps", scope ) );
+    }
+    assertTrue( ((ManifoldPsiClass)psiClass).isCurrentFragment( host, hostFile.getModificationStamp() ) );
+    NonBlockingReadActionImpl.waitForAsyncTaskCompletion();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertEquals( 0, FragmentCache.instance().getRefreshQueueDepth( getProject() ) );
+    assertEquals( refreshes, FragmentCache.instance().getRefreshCount( getProject() ) );
+  }
+}
@@ -0,0 +1,94 @@
+package manifold.ij.extensions;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.codeInsight.daemon.impl.HighlightInfoType;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.SyntaxTraverser;
+import java.util.EnumSet;
+import java.util.List;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class HighlightInfoFilterTest extends AbstractManifoldCodeInsightTest
+{
+  private static final List<String> DESCRIPTIONS = List.of(
+    "Number objects are compared using '==', not 'equals()'",
+    "Number objects are compared using '!=', not 'equals()'",
+    "'1.2bd' can be replaced with 'BigDecimal'",
+    "Casting 'x' to 'Foo' will produce 'ClassCastException' for any non-null value",
+    "Array index is out of bounds",
+    "Unnecessary semicolon ';'",
+    "Call to 'toString()' on array",
+    "The value 'x' assigned to 'y' is never used",
+    "Unhandled exception: java.io.IOException",
+    "Ambiguous method call: both 'a()' and 'b()' match",
+    "Illegal escape character in string literal",
+    "Cannot assign a value to final variable 'x'",
+    "Unclosed comment",
+    "Operator '-' cannot be applied to 'java.math.BigDecimal'",
+    "Operator '+' cannot be applied to 'java.math.BigDecimal', 'java.math.BigDecimal'",
+    "Operator '++' cannot be applied to 'java.math.BigDecimal'",
+    "Incompatible types. Found: 'java.math.BigDecimal', required: 'int'",
+    "Array type expected; found: 'java.util.List<java.lang.String>'",
+    "Variable expected",
+    "'foo()' in 'A' clashes with 'foo()' in 'B'; attempting to use incompatible return type",
+    "foreach not applicable to type 'Foo'",
+    "Non-static field 'x' cannot be referenced from a static context",
+    "Expected class or package",
+    "Usage of API documented as @since 11+",
+    "Type parameter 'T' is not within its bound; should implement 'java.lang.Comparable'",
+    "'foo(int)' in 'A' cannot be applied to '(java.lang.String)'",
+    "Cannot resolve symbol 'x'",
+    "不兼容的类型。实际为 'java.math.BigDecimal'，需要 'int'" );
+
+  public void testRoutingMatchesUnroutedDecisions()
+  {
+    PsiFile psiFile = myFixture.configureByFile( "science/ExerciseBindingExpressions.java" );
+    ManHighlightInfoFilter filter = new ManHighlightInfoFilter();
+
+    int suppressed = 0;
+    for( PsiElement leaf: SyntaxTraverser.psiTraverser( psiFile ).filter( e -> e.getFirstChild() == null ) )
+    {
+      if( leaf instanceof PsiWhiteSpace )
+      {
+        continue;
+      }
+
+      for( String description: DESCRIPTIONS )
+      {
+        for( HighlightInfoType type: List.of( HighlightInfoType.ERROR, HighlightInfoType.WARNING ) )
+        {
+          HighlightInfo hi = HighlightInfo.newHighlightInfo( type )
+            .range( leaf.getTextRange() )
+            .descriptionAndTooltip( description )
+            .create();
+          boolean accepted = filter.accept( hi, psiFile );
+          assertEquals( description + " at " + leaf.getTextOffset(), acceptUnrouted( filter, hi, psiFile ), accepted );
+          if( !accepted )
+          {
+            suppressed++;
+          }
+        }
+      }
+    }
+    // the corpus exercises suppression, not just acceptance
+    assertTrue( suppressed > 0 );
+  }
+
+  /**
+   * Reference decision that runs every filter regardless of the description.
+   */
+  private static boolean acceptUnrouted( ManHighlightInfoFilter filter, HighlightInfo hi, PsiFile psiFile )
+  {
+    return hi.getDescription() == null || filter.accept( hi, psiFile, EnumSet.allOf( ManHighlightInfoFilter.Route.class ) );
+  }
+
+  public void testRoute()
+  {
+    assertEquals( EnumSet.of( ManHighlightInfoFilter.Route.UnclosedComment, ManHighlightInfoFilter.Route.InterfaceError ),
+      ManHighlightInfoFilter.route( "Cannot resolve symbol 'x'" ) );
+    assertTrue( ManHighlightInfoFilter.route( "Operator '+' cannot be applied to 'java.math.BigDecimal'" )
+      .contains( ManHighlightInfoFilter.Route.OperatorCannotBeAppliedToWithCompoundAssignment ) );
+  }
+}
@@ -0,0 +1,65 @@
+package manifold.ij.extensions;
+
+import com.intellij.codeInsight.lookup.LookupElement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class LibraryPropertiesTest extends AbstractManifoldCodeInsightTest
+{
+  private static final String[] RECEIVERS = {
+    "date", "calendar", "timeZone", "locale", "currency", "scanner", "properties", "bitSet"};
+
+  public void testCompletionOnJavaUtilReceiversInfersOnce()
+  {
+    Map<String, Object> inferred = null;
+    for( int i = 0; i < 5; i++ )
+    {
+      for( String receiver: RECEIVERS )
+      {
+        // each configure replaces the file and modifies PSI, library properties must not be inferred again
+        myFixture.configureByText( "Foo.java",
+          "import java.util.*;\n" +
+          "public class Foo {\n" +
+          "  void foo( Date date, Calendar calendar, TimeZone timeZone, Locale locale, Currency currency, " +
+          "Scanner scanner, Properties properties, BitSet bitSet ) {\n" +
+          "    " + receiver + ".<caret>\n" +
+          "  }\n" +
+          "}\n" );
+        LookupElement[] lookups = myFixture.completeBasic();
+        if( receiver.equals( "date" ) )
+        {
+          // Date.getTime()/setTime() infer the "time" property
+          assertNotNull( lookups );
+          assertTrue( Arrays.stream( lookups ).anyMatch( lookup -> lookup.getLookupString().equals( "time" ) ) );
+        }
+      }
+
+      Map<String, Object> libraryProperties = snapshotLibraryProperties();
+      if( i == 0 )
+      {
+        // Date's properties are shared, whether they were inferred here or by an earlier test in the same project
+        assertTrue( libraryProperties.keySet().stream().anyMatch( key -> key.contains( "#java.util.Date#" ) ) );
+        inferred = libraryProperties;
+      }
+      else
+      {
+        // nothing is inferred again, the same shared lists remain
+        assertEquals( inferred.keySet(), libraryProperties.keySet() );
+        for( Map.Entry<String, Object> entry: inferred.entrySet() )
+        {
+          assertSame( entry.getKey(), entry.getValue(), libraryProperties.get( entry.getKey() ) );
+        }
+      }
+    }
+  }
+
+  private static Map<String, Object> snapshotLibraryProperties()
+  {
+    synchronized( PropertyInference.LIBRARY_PROPERTIES )
+    {
+      return new HashMap<>( PropertyInference.LIBRARY_PROPERTIES );
+    }
+  }
+}
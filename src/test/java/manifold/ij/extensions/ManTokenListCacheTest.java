@@ -0,0 +1,119 @@
+package manifold.ij.extensions;
+
+import com.intellij.lexer.TokenList;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.testFramework.LightVirtualFile;
+import java.util.ArrayList;
+import java.util.List;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.util.ReparseUtil;
+
+public class ManTokenListCacheTest extends AbstractManifoldCodeInsightTest
+{
+  private static final String SMALL = "class A { int a; }";
+  // a single block comment token, about 2MB of cache cost
+  private static final String LARGE = "/*" + "x".repeat( 1_000_000 ) + "*/";
+  // about 10MB of cache cost, more than a quarter of the byte bound
+  private static final String HUGE = "/*" + "x".repeat( 5_000_000 ) + "*/";
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    super.setUp();
+    ManTokenListCache.instance().clear();
+  }
+
+  @Override
+  protected void tearDown() throws Exception
+  {
+    try
+    {
+      ManTokenListCache.instance().clear();
+    }
+    finally
+    {
+      super.tearDown();
+    }
+  }
+
+  public void testCachedUntilDefinitionsChange()
+  {
+    VirtualFile file = new LightVirtualFile( "A.java", SMALL );
+    TokenList tokens = obtainTokens( file, SMALL );
+    assertSame( tokens, obtainTokens( file, SMALL ) );
+
+    ReparseUtil.instance().definitionsChanged();
+    TokenList relexed = obtainTokens( file, SMALL );
+    assertNotSame( tokens, relexed );
+    assertSame( relexed, obtainTokens( file, SMALL ) );
+  }
+
+  public void testInvalidateDropsOnlyThatFile()
+  {
+    VirtualFile a = new LightVirtualFile( "A.java", SMALL );
+    VirtualFile b = new LightVirtualFile( "B.java", SMALL );
+    TokenList aTokens = obtainTokens( a, SMALL );
+    TokenList bTokens = obtainTokens( b, SMALL );
+
+    ManTokenListCache.instance().invalidate( a );
+    assertNotSame( aTokens, obtainTokens( a, SMALL ) );
+    assertSame( bTokens, obtainTokens( b, SMALL ) );
+  }
+
+  public void testEntryBoundEvictsLeastRecentlyUsed()
+  {
+    // one more than the 64 entry bound
+    List<VirtualFile> files = new ArrayList<>();
+    List<TokenList> tokens = new ArrayList<>();
+    for( int i = 0; i <= 64; i++ )
+    {
+      VirtualFile file = new LightVirtualFile( "A" + i + ".java", SMALL );
+      files.add( file );
+      tokens.add( obtainTokens( file, SMALL ) );
+    }
+
+    for( int i = 1; i <= 64; i++ )
+    {
+      assertSame( tokens.get( i ), obtainTokens( files.get( i ), SMALL ) );
+    }
+    assertNotSame( tokens.get( 0 ), obtainTokens( files.get( 0 ), SMALL ) );
+  }
+
+  public void testByteBoundEvictsLeastRecentlyUsed()
+  {
+    // 17 entries of about 2MB exceed the 32MB bound well before the entry bound
+    List<VirtualFile> files = new ArrayList<>();
+    List<TokenList> tokens = new ArrayList<>();
+    for( int i = 0; i < 17; i++ )
+    {
+      VirtualFile file = new LightVirtualFile( "Large" + i + ".java", LARGE );
+      files.add( file );
+      tokens.add( obtainTokens( file, LARGE ) );
+    }
+
+    for( int i = 1; i < 17; i++ )
+    {
+      assertSame( tokens.get( i ), obtainTokens( files.get( i ), LARGE ) );
+    }
+    assertNotSame( tokens.get( 0 ), obtainTokens( files.get( 0 ), LARGE ) );
+  }
+
+  public void testHugeFileIsNotCached()
+  {
+    VirtualFile small = new LightVirtualFile( "A.java", SMALL );
+    TokenList smallTokens = obtainTokens( small, SMALL );
+
+    VirtualFile huge = new LightVirtualFile( "Huge.java", HUGE );
+    assertNotSame( obtainTokens( huge, HUGE ), obtainTokens( huge, HUGE ) );
+
+    // and it does not push other entries out
+    assertSame( smallTokens, obtainTokens( small, SMALL ) );
+  }
+
+  private static TokenList obtainTokens( VirtualFile file, String text )
+  {
+    return ManTokenListCache.instance()
+      .obtainTokens( file, file.getModificationStamp(), text, new ManJavaLexer( LanguageLevel.JDK_1_8 ) );
+  }
+}
@@ -0,0 +1,96 @@
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.augment.PsiAugmentProvider;
+import com.intellij.psi.util.CachedValue;
+import java.util.List;
+import java.util.stream.Collectors;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class PropertiesAugmentProviderTest extends AbstractManifoldCodeInsightTest
+{
+  private static final int CALLS = 100_000;
+
+  public void testGetAugmentsOnClassWithoutProperties()
+  {
+    PsiClass psiClass = myFixture.addClass(
+      "package abc;\n" +
+      "public class NoProperties {\n" +
+      "  void run() {}\n" +
+      "  int size() { return 0; }\n" +
+      "}\n" );
+    ManPropertiesAugmentProvider provider = PsiAugmentProvider.EP_NAME.findExtension( ManPropertiesAugmentProvider.class );
+    assertNotNull( provider );
+
+    ReadAction.run( () -> {
+      // the first calls compute and cache the field and method augments, as opposed to returning early
+      List<PsiField> fields = provider.getAugments( psiClass, PsiField.class, null );
+      List<PsiMethod> methods = provider.getAugments( psiClass, PsiMethod.class, null );
+      assertTrue( fields.isEmpty() );
+      assertTrue( methods.isEmpty() );
+      CachedValue<List<PsiField>> cachedFields = psiClass.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_FIELD_AUGMENTS );
+      CachedValue<List<PsiMethod>> cachedMethods = psiClass.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_METHOD_AUGMENTS );
+      assertNotNull( cachedFields );
+      assertNotNull( cachedMethods );
+
+      // after the first call each call is a cached value lookup, the same lists are returned
+      for( int i = 0; i < CALLS; i++ )
+      {
+        assertSame( fields, provider.getAugments( psiClass, PsiField.class, null ) );
+        assertSame( methods, provider.getAugments( psiClass, PsiMethod.class, null ) );
+      }
+      assertSame( cachedFields, psiClass.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_FIELD_AUGMENTS ) );
+      assertSame( cachedMethods, psiClass.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_METHOD_AUGMENTS ) );
+      assertTrue( cachedFields.hasUpToDateValue() );
+      assertTrue( cachedMethods.hasUpToDateValue() );
+    } );
+  }
+
+  public void testEditingBaseClassBodyKeepsSubclassProperties()
+  {
+    PsiClass base = myFixture.addClass(
+      "package abc;\n" +
+      "public class Base {\n" +
+      "  private String _name;\n" +
+      "  public String getName() { return _name; }\n" +
+      "  public void setName( String name ) { _name = name; }\n" +
+      "  public void work() { int i = 0; }\n" +
+      "}\n" );
+    PsiClass sub = myFixture.addClass(
+      "package abc;\n" +
+      "public class Sub extends Base {\n" +
+      "  public int getAge() { return 0; }\n" +
+      "  public void setAge( int age ) {}\n" +
+      "}\n" );
+    ManPropertiesAugmentProvider provider = PsiAugmentProvider.EP_NAME.findExtension( ManPropertiesAugmentProvider.class );
+    assertNotNull( provider );
+
+    List<PsiField> props = ReadAction.compute( () -> provider.getAugments( sub, PsiField.class, null ) );
+    assertEquals( List.of( "age" ), props.stream().map( PsiField::getName ).collect( Collectors.toList() ) );
+
+    // a body edit in the base class does not change any accessor, the subclass keeps its properties
+    replaceInBase( base, "int i = 0;", "int i = 1;" );
+    assertSame( props, ReadAction.compute( () -> provider.getAugments( sub, PsiField.class, null ) ) );
+
+    // a new accessor in the base class may affect inference in the subclass
+    replaceInBase( base, "public void work()", "public String getTitle() { return null; }\n  public void work()" );
+    assertNotSame( props, ReadAction.compute( () -> provider.getAugments( sub, PsiField.class, null ) ) );
+  }
+
+  private void replaceInBase( PsiClass base, String oldText, String newText )
+  {
+    Document document = PsiDocumentManager.getInstance( getProject() ).getDocument( base.getContainingFile() );
+    assertNotNull( document );
+    WriteCommandAction.runWriteCommandAction( getProject(), () -> {
+      int offset = document.getText().indexOf( oldText );
+      document.replaceString( offset, offset + oldText.length(), newText );
+      PsiDocumentManager.getInstance( getProject() ).commitDocument( document );
+    } );
+  }
+}
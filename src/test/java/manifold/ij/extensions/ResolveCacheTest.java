@@ -0,0 +1,114 @@
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.JavaResolveResult;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.impl.source.resolve.ResolveCache;
+import com.intellij.psi.util.PsiTreeUtil;
+import java.util.List;
+import java.util.stream.Collectors;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.util.ManVersionUtil;
+
+public class ResolveCacheTest extends AbstractManifoldCodeInsightTest
+{
+  private static final int REFS = 200;
+
+  public void testResolveInferredPropertiesOfLibraryClass()
+  {
+    StringBuilder body = new StringBuilder();
+    for( int i = 0; i < REFS; i++ )
+    {
+      body.append( "    int h" ).append( i ).append( " = time.hour + time.minute;\n" );
+    }
+    myFixture.configureByText( "Times.java",
+      "package abc;\n" +
+      "import java.time.LocalTime;\n" +
+      "public class Times {\n" +
+      "  void run( LocalTime time ) {\n" +
+      body +
+      "  }\n" +
+      "}\n" );
+
+    PsiClass times = myFixture.findClass( "abc.Times" );
+    for( int i = 0; i < 3; i++ )
+    {
+      // each pass resolves from scratch, field augmenters are invoked at most once per resolve
+      ResolveCache.getInstance( getProject() ).clearCache( true );
+      ReadAction.run( () -> {
+        List<PsiReferenceExpression> refs = PsiTreeUtil.findChildrenOfType( times, PsiReferenceExpression.class ).stream()
+          .filter( ref -> "hour".equals( ref.getReferenceName() ) || "minute".equals( ref.getReferenceName() ) )
+          .collect( Collectors.toList() );
+        assertEquals( REFS * 2, refs.size() );
+        for( PsiReferenceExpression ref: refs )
+        {
+          PsiElement resolved = ref.resolve();
+          assertTrue( ref.getText(), resolved instanceof PsiField );
+          assertEquals( ref.getReferenceName(), ((PsiField)resolved).getName() );
+        }
+        // the session ends with the outermost resolve
+        assertEquals( 0, ManResolveCache.AUGMENTER_SESSION.get()._depth );
+        assertTrue( ManResolveCache.AUGMENTER_SESSION.get()._augmented.isEmpty() );
+      } );
+    }
+  }
+
+  public void testFieldAugmenterNotInvokedPastMaxDepth()
+  {
+    myFixture.configureByText( "Time.java",
+      "package abc;\n" +
+      "import java.time.LocalTime;\n" +
+      "public class Time {\n" +
+      "  int run( LocalTime time ) { return time.hour; }\n" +
+      "}\n" );
+    PsiClass localTime = myFixture.findClass( "java.time.LocalTime" );
+    PsiReferenceExpression ref = ReadAction.compute( () ->
+      PsiTreeUtil.findChildrenOfType( myFixture.findClass( "abc.Time" ), PsiReferenceExpression.class ).stream()
+        .filter( e -> "hour".equals( e.getReferenceName() ) )
+        .findFirst().orElseThrow() );
+
+    // already re-resolving at the maximum depth, the augmenters are not invoked and the private field is found
+    ManResolveCache.AugmenterSession session = ManResolveCache.AUGMENTER_SESSION.get();
+    localTime.putUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_FIELD_AUGMENTS, null );
+    ResolveCache.getInstance( getProject() ).clearCache( true );
+    session._depth = ManResolveCache.MAX_AUGMENTER_DEPTH;
+    try
+    {
+      JavaResolveResult result = ReadAction.compute( () -> ref.advancedResolve( false ) );
+      assertTrue( result.getElement() instanceof PsiField );
+      assertFalse( result.isAccessible() );
+      assertNull( localTime.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_FIELD_AUGMENTS ) );
+    }
+    finally
+    {
+      session._depth = 0;
+      session._augmented.clear();
+    }
+
+    // a fresh resolve invokes them, the reference resolves to the property
+    ResolveCache.getInstance( getProject() ).clearCache( true );
+    JavaResolveResult result = ReadAction.compute( () -> ref.advancedResolve( false ) );
+    assertTrue( result.getElement() instanceof PsiField );
+    assertTrue( result.isAccessible() );
+    assertNotNull( localTime.getUserData( ManPropertiesAugmentProvider.KEY_CACHED_PROP_FIELD_AUGMENTS ) );
+  }
+
+  public void testLegacyResolveCacheAccessors()
+  {
+    if( ManVersionUtil.isAtLeast( 2024, 2, 0 ) )
+    {
+      // ResolveCache internals are called directly
+      return;
+    }
+
+    // before 2024.2 every resolve goes through the legacy accessors, they must be found
+    assertNotNull( ManResolveCache.LEGACY_GET_INDEX );
+    assertNotNull( ManResolveCache.LEGACY_GET_MAP );
+    ManResolveCache resolveCache = (ManResolveCache)ResolveCache.getInstance( getProject() );
+    assertNotNull( resolveCache.getLegacyMap( true, false ) );
+    assertNotNull( resolveCache.getLegacyMap( false, true ) );
+  }
+}
@@ -0,0 +1,29 @@
+package manifold.ij.extensions;
+
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class ResourceAnnotatorTest extends AbstractManifoldCodeInsightTest
+{
+  public void testAnnotatesOnlyFilesHostingManifoldTypes()
+  {
+    // Java file without fragments
+    myFixture.configureByText( "Plain.java", "public class Plain { int foo() { int i = 1; return i + 1; } }" );
+    myFixture.doHighlighting();
+    assertFalse( ManifoldPsiClassAnnotator.hostsManifoldTypes( myFixture.getFile() ) );
+
+    // text file no type manifold handles
+    myFixture.configureByText( "notes.txt", "nothing to see here" );
+    myFixture.doHighlighting();
+    assertFalse( ManifoldPsiClassAnnotator.hostsManifoldTypes( myFixture.getFile() ) );
+
+    // resource file
+    myFixture.configureByFile( "json/sample/Person.json" );
+    myFixture.doHighlighting();
+    assertTrue( ManifoldPsiClassAnnotator.hostsManifoldTypes( myFixture.getFile() ) );
+
+    // Java file with a file fragment
+    myFixture.configureByFile( "ext/fragment/EditOutsideFragment.java" );
+    myFixture.doHighlighting();
+    assertTrue( ManifoldPsiClassAnnotator.hostsManifoldTypes( myFixture.getFile() ) );
+  }
+}
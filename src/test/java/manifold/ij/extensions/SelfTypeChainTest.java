@@ -0,0 +1,99 @@
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.impl.source.resolve.ResolveCache;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.PsiTreeUtil;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class SelfTypeChainTest extends AbstractManifoldCodeInsightTest
+{
+  private static final int CALLS = 50;
+
+  public void testFluentBuilderChain()
+  {
+    myFixture.addClass(
+      "package abc;\n" +
+      "import manifold.ext.rt.api.Self;\n" +
+      "public class Builder {\n" +
+      "  public @Self Builder with( String value ) { return this; }\n" +
+      "  public Builder plain( String value ) { return this; }\n" +
+      "}\n" );
+    myFixture.addClass(
+      "package abc;\n" +
+      "public class SubBuilder extends Builder {\n" +
+      "  public SubBuilder sub() { return this; }\n" +
+      "}\n" );
+
+    StringBuilder selfChain = new StringBuilder( "new SubBuilder()" );
+    StringBuilder plainChain = new StringBuilder( "new SubBuilder()" );
+    for( int i = 0; i < CALLS - 1; i++ )
+    {
+      selfChain.append( ".with( \"" ).append( i ).append( "\" )" );
+      plainChain.append( ".plain( \"" ).append( i ).append( "\" )" );
+    }
+    selfChain.append( ".sub()" );
+    plainChain.append( ".plain( \"last\" )" );
+
+    myFixture.configureByText( "Chains.java",
+      "package abc;\n" +
+      "public class Chains {\n" +
+      "  void run() {\n" +
+      "    SubBuilder sub = " + selfChain + ";\n" +
+      "    Builder builder = " + plainChain + ";\n" +
+      "  }\n" +
+      "}\n" );
+
+    PsiClass chains = myFixture.findClass( "abc.Chains" );
+    ReadAction.run( () -> {
+      Collection<PsiMethodCallExpression> calls = PsiTreeUtil.findChildrenOfType( chains, PsiMethodCallExpression.class );
+      assertEquals( CALLS * 2, calls.size() );
+
+      // @Self makes every call in the chain return SubBuilder, so sub() resolves at the end
+      for( PsiMethodCallExpression call: calls )
+      {
+        PsiMethod method = call.resolveMethod();
+        assertNotNull( call.getText(), method );
+        PsiType type = call.getType();
+        assertNotNull( call.getText(), type );
+        String expected = method.getName().equals( "plain" ) ? "abc.Builder" : "abc.SubBuilder";
+        assertEquals( call.getText(), expected, type.getCanonicalText() );
+      }
+    } );
+
+    // self type positions are cached once per method, not once per call, and survive dropping resolve results
+    Map<PsiMethod, CachedValue<Long>> cached = new HashMap<>();
+    ReadAction.run( () -> {
+      for( PsiMethodCallExpression call: PsiTreeUtil.findChildrenOfType( chains, PsiMethodCallExpression.class ) )
+      {
+        PsiMethod method = call.resolveMethod();
+        assertNotNull( call.getText(), method );
+        cached.put( method, method.getUserData( SelfTypeUtil.KEY_SELF_TYPE_POSITIONS ) );
+      }
+    } );
+    assertEquals( 3, cached.size() );
+    cached.forEach( ( method, value ) -> {
+      assertNotNull( method.getName(), value );
+      assertTrue( method.getName(), value.hasUpToDateValue() );
+    } );
+
+    ResolveCache.getInstance( getProject() ).clearCache( true );
+    ReadAction.run( () -> {
+      for( PsiMethodCallExpression call: PsiTreeUtil.findChildrenOfType( chains, PsiMethodCallExpression.class ) )
+      {
+        PsiMethod method = call.resolveMethod();
+        assertNotNull( call.getText(), method );
+        assertNotNull( call.getText(), call.getType() );
+        assertSame( call.getText(), cached.get( method ), method.getUserData( SelfTypeUtil.KEY_SELF_TYPE_POSITIONS ) );
+      }
+    } );
+    cached.forEach( ( method, value ) -> assertTrue( method.getName(), value.hasUpToDateValue() ) );
+  }
+}
@@ -0,0 +1,64 @@
+package manifold.ij.extensions;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.util.CachedValue;
+import java.util.List;
+import java.util.Map;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class StructuralAssignabilityTest extends AbstractManifoldCodeInsightTest
+{
+  public void testManyStructuralAssignments()
+  {
+    // 2,000 structural assignments, each checks Point against the @Structural interface Coordinate
+    StringBuilder text = new StringBuilder(
+      "package ext;\n\n" +
+      "import manifold.ext.rt.api.Structural;\n\n" +
+      "public class ManyAssignments\n{\n" +
+      "  @Structural\n" +
+      "  public interface Coordinate { double getX(); double getY(); }\n" +
+      "  public static class Point { public double getX() { return 1; } public double getY() { return 2; } }\n" +
+      "  public static class Line { public double getX() { return 1; } }\n" );
+    for( int i = 0; i < 20; i++ )
+    {
+      text.append( "  void assign" ).append( i ).append( "( Point point )\n  {\n" );
+      for( int j = 0; j < 100; j++ )
+      {
+        text.append( "    Coordinate c" ).append( j ).append( " = point;\n" );
+      }
+      text.append( "  }\n" );
+    }
+    text.append( "}\n" );
+    PsiJavaFile psiFile = (PsiJavaFile)myFixture.configureByText( "ManyAssignments.java", text.toString() );
+
+    PsiClass outer = psiFile.getClasses()[0];
+    PsiClass coordinate = outer.findInnerClassByName( "Coordinate", false );
+    PsiClass point = outer.findInnerClassByName( "Point", false );
+    PsiClass line = outer.findInnerClassByName( "Line", false );
+
+    List<HighlightInfo> highlightInfos = myFixture.doHighlighting( HighlightSeverity.ERROR );
+    assertEmpty( highlightInfos );
+
+    // the first pass checks Point against Coordinate and memoizes the result on Point
+    CachedValue<Map<PsiClass, Boolean>> memo = point.getUserData( ManJavaClassSupersImpl.KEY_STRUCTURAL_ASSIGNABILITY );
+    assertNotNull( memo );
+    assertTrue( memo.hasUpToDateValue() );
+    Map<PsiClass, Boolean> results = memo.getValue();
+    assertEquals( Boolean.TRUE, results.get( coordinate ) );
+
+    // the second pass is answered from the same memo
+    DaemonCodeAnalyzer.getInstance( getProject() ).restart();
+    assertEmpty( myFixture.doHighlighting( HighlightSeverity.ERROR ) );
+    assertSame( memo, point.getUserData( ManJavaClassSupersImpl.KEY_STRUCTURAL_ASSIGNABILITY ) );
+    assertTrue( memo.hasUpToDateValue() );
+    assertSame( results, memo.getValue() );
+
+    assertTrue( ManJavaClassSupersImpl.isStructurallyAssignable( coordinate, point ) );
+    assertFalse( ManJavaClassSupersImpl.isStructurallyAssignable( coordinate, line ) );
+    assertFalse( ManJavaClassSupersImpl.isStructurallyAssignable( point, coordinate ) );
+  }
+}
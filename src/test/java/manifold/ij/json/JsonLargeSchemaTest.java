@@ -0,0 +1,106 @@
+package manifold.ij.json;
+
+import com.intellij.json.psi.JsonFile;
+import com.intellij.json.psi.JsonObject;
+import com.intellij.json.psi.JsonProperty;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.extensions.ResourceToManifoldUtil;
+import manifold.ij.util.SettleModalEventQueue;
+
+public class JsonLargeSchemaTest extends AbstractManifoldCodeInsightTest
+{
+  private static final int PROPERTIES = 2000;
+
+  public void testMapEveryProperty()
+  {
+    List<JsonProperty> properties = findSchemaProperties( addLargeSchema() );
+    assertEquals( PROPERTIES, properties.size() );
+
+    for( JsonProperty property: properties )
+    {
+      Set<String> names = ResourceToManifoldUtil.findJavaElementsFor( property ).stream()
+        .map( e -> ((PsiNamedElement)e).getName() )
+        .collect( Collectors.toSet() );
+      String name = capitalize( property.getName() );
+      assertTrue( names.toString(), names.contains( "get" + name ) );
+      assertTrue( names.toString(), names.contains( "set" + name ) );
+    }
+  }
+
+  public void testFindUsagesOfLastProperty()
+  {
+    List<JsonProperty> properties = findSchemaProperties( addLargeSchema() );
+    JsonProperty last = properties.get( properties.size() - 1 );
+    for( int i = 0; i < 10; i++ )
+    {
+      assertEquals( 2, myFixture.findUsages( last ).size() );
+    }
+  }
+
+  public void testRenameLastProperty()
+  {
+    PsiFile json = addLargeSchema();
+    List<JsonProperty> properties = findSchemaProperties( json );
+    JsonProperty last = properties.get( properties.size() - 1 );
+
+    myFixture.configureFromExistingVirtualFile( json.getVirtualFile() );
+    myFixture.getEditor().getCaretModel().moveToOffset( last.getTextOffset() + 1 );
+    myFixture.renameElementAtCaret( "renamed" );
+
+    // let remaining ui event processing finish (rename uses invokeLater())
+    SettleModalEventQueue.instance().run();
+
+    String javaText = myFixture.findClass( "json.big.TestBig" ).getContainingFile().getText();
+    assertTrue( javaText, javaText.contains( "big.getRenamed()" ) );
+    assertTrue( javaText, javaText.contains( "big.setRenamed(" ) );
+  }
+
+  private PsiFile addLargeSchema()
+  {
+    StringBuilder json = new StringBuilder()
+      .append( "{\n" )
+      .append( "  \"$schema\": \"http://json-schema.org/draft-06/schema#\",\n" )
+      .append( "  \"type\": \"object\",\n" )
+      .append( "  \"properties\": {\n" );
+    for( int i = 0; i < PROPERTIES; i++ )
+    {
+      json.append( "    \"prop" ).append( i ).append( "\": {\n" )
+        .append( "      \"type\": \"string\"\n" )
+        .append( "    }" ).append( i < PROPERTIES - 1 ? "," : "" ).append( '\n' );
+    }
+    json.append( "  }\n" ).append( "}\n" );
+    PsiFile psiFile = myFixture.addFileToProject( "json/big/Big.json", json.toString() );
+
+    String last = capitalize( "prop" + (PROPERTIES - 1) );
+    myFixture.addFileToProject( "json/big/TestBig.java",
+      "package json.big;\n" +
+      "\n" +
+      "public class TestBig {\n" +
+      "  public static void main(String[] args) {\n" +
+      "    Big big = Big.create();\n" +
+      "    big.get" + last + "();\n" +
+      "    big.set" + last + "( \"x\" );\n" +
+      "  }\n" +
+      "}\n" );
+    return psiFile;
+  }
+
+  private static List<JsonProperty> findSchemaProperties( PsiFile json )
+  {
+    JsonObject schema = (JsonObject)((JsonFile)json).getTopLevelValue();
+    assertNotNull( schema );
+    JsonProperty properties = schema.findProperty( "properties" );
+    assertNotNull( properties );
+    return ((JsonObject)properties.getValue()).getPropertyList();
+  }
+
+  private static String capitalize( String name )
+  {
+    return Character.toUpperCase( name.charAt( 0 ) ) + name.substring( 1 );
+  }
+}
@@ -1,13 +1,16 @@
 package manifold.ij.json;
 
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiModifierListOwner;
 import com.intellij.usageView.UsageInfo;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.stream.Collectors;
 import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.extensions.ResourceToManifoldUtil;
 
 public class JsonUsagesTest extends AbstractManifoldCodeInsightTest
 {
@@ -54,6 +57,20 @@ public class JsonUsagesTest extends AbstractManifoldCodeInsightTest
     assertTrue( usagesText.contains( "person.setLastName" ) );
   }
 
+  public void testFindUsages_Property_MappingComputedOnce() throws Exception
+  {
+    myFixture.configureByFiles( "json/usages/Person_Caret_PropertyDeclaration.json", "json/usages/TestJsonUsages_Property.java" );
+    PsiElement property = myFixture.getElementAtCaret();
+    Set<PsiModifierListOwner> mapped = ResourceToManifoldUtil.findJavaElementsFor( property );
+    assertFalse( mapped.isEmpty() );
+    for( int i = 0; i < 100; i++ )
+    {
+      assertEquals( 2, myFixture.findUsages( property ).size() );
+    }
+    // the property is mapped to its getter/setter once, the searches reuse the mapping
+    assertSame( mapped, ResourceToManifoldUtil.findJavaElementsFor( property ) );
+  }
+
 //  public void testFindUsages_Getter_FromDeclaration() throws Exception
 //  {
 //    Collection<UsageInfo> usageInfos = myFixture.testFindUsages( "js/usages/MyJsClass_Caret_GetterDeclaration.js", "js/usages/TestJsUsages_Getter_FromDeclaration.java" );
@@ -0,0 +1,76 @@
+package manifold.ij.preprocessor;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.PsiTestUtil;
+import java.util.Map;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.android.BuildVariantSymbols;
+import manifold.ij.util.ReparseUtil;
+
+public class BuildVariantSymbolsTest extends AbstractManifoldCodeInsightTest
+{
+  public void testBuildConfigParsedOncePerModificationStamp()
+  {
+    VirtualFile buildConfig = myFixture.addFileToProject(
+      "app/build/generated/source/buildConfig/freeDebug/com/example/BuildConfig.java",
+      makeBuildConfig( "free", "debug", true ) ).getVirtualFile();
+    PsiTestUtil.addSourceRoot( myModule, buildConfig.getParent().getParent().getParent() );
+
+    Map<String, String> free = BuildVariantSymbols.getBuildConfigSymbols( myModule );
+    assertEquals( "free", free.get( "FLAVOR" ) );
+    assertEquals( "debug", free.get( "BUILD_TYPE" ) );
+    assertTrue( free.containsKey( "DEBUG" ) );
+
+    // same stamp, the cached symbols are reused instead of parsing again
+    for( int i = 0; i < 10; i++ )
+    {
+      assertSame( free, BuildVariantSymbols.getBuildConfigSymbols( myModule ) );
+    }
+
+    // simulate Gradle regenerating the file for another flavour
+    WriteAction.run( () -> VfsUtil.saveText( buildConfig, makeBuildConfig( "paid", "release", false ) ) );
+
+    Map<String, String> paid = BuildVariantSymbols.getBuildConfigSymbols( myModule );
+    assertNotSame( free, paid );
+    assertEquals( "paid", paid.get( "FLAVOR" ) );
+    assertEquals( "release", paid.get( "BUILD_TYPE" ) );
+    assertFalse( paid.containsKey( "DEBUG" ) );
+    assertSame( paid, BuildVariantSymbols.getBuildConfigSymbols( myModule ) );
+  }
+
+  public void testChangedSymbolsFoundWhenLoadedBeforeListenerRuns()
+  {
+    VirtualFile buildConfig = myFixture.addFileToProject(
+      "app/build/generated/source/buildConfig/freeDebug/com/example/BuildConfig.java",
+      makeBuildConfig( "free", "debug", true ) ).getVirtualFile();
+    PsiTestUtil.addSourceRoot( myModule, buildConfig.getParent().getParent().getParent() );
+    assertEquals( "free", BuildVariantSymbols.getBuildConfigSymbols( myModule ).get( "FLAVOR" ) );
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+
+    long definitions = ReparseUtil.instance().getDefinitionsModificationCount();
+    WriteAction.run( () -> VfsUtil.saveText( buildConfig, makeBuildConfig( "paid", "release", false ) ) );
+    // e.g., the lexer loads the new symbols before the listener's deferred task runs
+    assertEquals( "paid", BuildVariantSymbols.getBuildConfigSymbols( myModule ).get( "FLAVOR" ) );
+
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertTrue( ReparseUtil.instance().getDefinitionsModificationCount() > definitions );
+  }
+
+  private static String makeBuildConfig( String flavor, String buildType, boolean debug )
+  {
+    return
+      "package com.example;\n" +
+      "\n" +
+      "public final class BuildConfig {\n" +
+      "  public static final boolean DEBUG = Boolean.parseBoolean(\"" + debug + "\");\n" +
+      "  public static final String APPLICATION_ID = \"com.example." + flavor + "\";\n" +
+      "  public static final String BUILD_TYPE = \"" + buildType + "\";\n" +
+      "  public static final String FLAVOR = \"" + flavor + "\";\n" +
+      "  public static final int VERSION_CODE = 1;\n" +
+      "  public static final String VERSION_NAME = \"1.0\";\n" +
+      "}\n";
+  }
+}
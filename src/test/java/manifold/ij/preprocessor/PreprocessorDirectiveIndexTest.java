@@ -0,0 +1,70 @@
+package manifold.ij.preprocessor;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiErrorElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.extensions.ManPreprocessorDirectiveIndex;
+
+public class PreprocessorDirectiveIndexTest extends AbstractManifoldCodeInsightTest
+{
+  private static final String PLAIN =
+    "package preprocessor;\n" +
+    "public class NoDirectives {\n" +
+    "  String s = \"x#if FOO\"; // x#if FOO\n" +
+    "  int i;\n" +
+    "}\n";
+
+  public void testIndexedDirectives()
+  {
+    VirtualFile plain = myFixture.addFileToProject( "preprocessor/NoDirectives.java", PLAIN ).getVirtualFile();
+    assertFalse( ManPreprocessorDirectiveIndex.mayHaveDirectives( getProject(), plain ) );
+
+    VirtualFile directives = myFixture.addFileToProject( "preprocessor/Directives.java",
+      "package preprocessor;\n" +
+      "public class Directives {\n" +
+      "  #if FOO\n" +
+      "  int i;\n" +
+      "  #endif\n" +
+      "}\n" ).getVirtualFile();
+    assertTrue( ManPreprocessorDirectiveIndex.mayHaveDirectives( getProject(), directives ) );
+  }
+
+  public void testFileGainingFirstDirectiveIsPreprocessed()
+  {
+    VirtualFile vfile = myFixture.addFileToProject( "preprocessor/NoDirectives.java", PLAIN ).getVirtualFile();
+    assertFalse( ManPreprocessorDirectiveIndex.mayHaveDirectives( getProject(), vfile ) );
+    myFixture.configureFromExistingVirtualFile( vfile );
+
+    Document document = myFixture.getEditor().getDocument();
+    WriteCommandAction.runWriteCommandAction( getProject(), () -> {
+      int offset = document.getText().indexOf( "  int i;" );
+      document.insertString( offset, "  #if FOO\n" );
+      document.insertString( offset + "  #if FOO\n  int i;\n".length(), "  #endif\n" );
+      PsiDocumentManager.getInstance( getProject() ).commitDocument( document );
+    } );
+
+    // the unsaved change is not in the index yet, the file must be lexed with ManJavaLexer regardless
+    assertTrue( ManPreprocessorDirectiveIndex.mayHaveDirectives( getProject(), vfile ) );
+    assertDirectivesAreComments( PsiDocumentManager.getInstance( getProject() ).getPsiFile( document ) );
+
+    FileDocumentManager.getInstance().saveDocument( document );
+    assertTrue( ManPreprocessorDirectiveIndex.mayHaveDirectives( getProject(), vfile ) );
+  }
+
+  private static void assertDirectivesAreComments( PsiFile psiFile )
+  {
+    assertNotNull( psiFile );
+    // the plain JavaLexer makes bad characters and errors of directives
+    assertEmpty( PsiTreeUtil.findChildrenOfType( psiFile, PsiErrorElement.class ) );
+    assertEquals( 2, PsiTreeUtil.findChildrenOfType( psiFile, PsiComment.class ).stream()
+      .filter( comment -> comment.getText().startsWith( "#" ) )
+      .count() );
+  }
+}
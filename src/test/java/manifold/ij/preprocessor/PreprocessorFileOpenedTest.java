@@ -0,0 +1,81 @@
+package manifold.ij.preprocessor;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.application.impl.NonBlockingReadActionImpl;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class PreprocessorFileOpenedTest extends AbstractManifoldCodeInsightTest
+{
+  public void testOpeningFileChecksConditionalsInBackground()
+  {
+    VirtualFile vfile = myFixture.addFileToProject( "preprocessor/Conditionals.java",
+      "package preprocessor;\n" +
+      "public class Conditionals {\n" +
+      "  #if FOO\n" +
+      "  int i;\n" +
+      "  #endif\n" +
+      "}\n" ).getVirtualFile();
+    VirtualFile plain = myFixture.addFileToProject( "preprocessor/Plain.java",
+      "package preprocessor;\n" +
+      "public class Plain {\n" +
+      "  int i;\n" +
+      "}\n" ).getVirtualFile();
+    PsiFile psiFile = PsiManager.getInstance( getProject() ).findFile( vfile );
+    PsiFile plainPsiFile = PsiManager.getInstance( getProject() ).findFile( plain );
+
+    assertTrue( ApplicationManager.getApplication().isDispatchThread() );
+    FileEditorManager.getInstance( getProject() ).openFile( vfile, false );
+    FileEditorManager.getInstance( getProject() ).openFile( plain, false );
+    // nothing is checked or reparsed while the file is opened
+    assertSame( psiFile, PsiManager.getInstance( getProject() ).findFile( vfile ) );
+
+    // the scan runs in a background read action, only the file with conditionals is reparsed
+    NonBlockingReadActionImpl.waitForAsyncTaskCompletion();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertNotSame( psiFile, PsiManager.getInstance( getProject() ).findFile( vfile ) );
+    assertSame( plainPsiFile, PsiManager.getInstance( getProject() ).findFile( plain ) );
+  }
+
+  public void testReopenedFileIsLexedWithDefinitionsChangedWhileClosed()
+  {
+    VirtualFile buildProperties = myFixture.addFileToProject( "preprocessor/build.properties", "FOO=\n" ).getVirtualFile();
+    VirtualFile vfile = myFixture.addFileToProject( "preprocessor/Switch.java",
+      "package preprocessor;\n" +
+      "public class Switch {\n" +
+      "  #if FOO\n" +
+      "  int on;\n" +
+      "  #else\n" +
+      "  int off;\n" +
+      "  #endif\n" +
+      "}\n" ).getVirtualFile();
+    myFixture.configureFromExistingVirtualFile( vfile );
+    assertOnlyField( "on" );
+
+    FileEditorManager.getInstance( getProject() ).closeFile( vfile );
+    // changed outside an editor e.g., by a branch switch, so no document event reparses the file
+    WriteAction.run( () -> VfsUtil.saveText( buildProperties, "BAR=\n" ) );
+
+    // the file's own content and modification stamp are unchanged, its cached tokens must not be reused on reopen
+    FileEditorManager.getInstance( getProject() ).openFile( vfile, false );
+    NonBlockingReadActionImpl.waitForAsyncTaskCompletion();
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+    assertOnlyField( "off" );
+  }
+
+  private void assertOnlyField( String name )
+  {
+    PsiClass psiClass = myFixture.findClass( "preprocessor.Switch" );
+    PsiField[] fields = psiClass.getFields();
+    assertEquals( 1, fields.length );
+    assertEquals( name, fields[0].getName() );
+  }
+}
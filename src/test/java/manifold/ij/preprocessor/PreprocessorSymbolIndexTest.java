@@ -0,0 +1,75 @@
+package manifold.ij.preprocessor;
+
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiReference;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.usageView.UsageInfo;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.intellij.openapi.vfs.VirtualFile;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.extensions.ManPreprocessorSymbol;
+import manifold.ij.extensions.ManPreprocessorSymbolIndex;
+
+public class PreprocessorSymbolIndexTest extends AbstractManifoldCodeInsightTest
+{
+  public void testCollectSymbols()
+  {
+    String text =
+      "#define AAA\n" +
+      "#undef BBB // not CCC\n" +
+      "#if AAA && !(BBB || DDD.EEE) // not FFF\n" +
+      "#elif GGG == \"not HHH\"\n" +
+      "#else\n" +
+      "#endif\n" +
+      "String s = \"x#if\"; // no directive\n";
+    Map<String, List<Integer>> symbols = ManPreprocessorSymbolIndex.collectSymbols( text );
+    assertEquals( Set.of( "AAA", "BBB", "DDD.EEE", "GGG" ), symbols.keySet() );
+    assertEquals( List.of( text.indexOf( "AAA" ), text.indexOf( "AAA", text.indexOf( "#if" ) ) ), symbols.get( "AAA" ) );
+  }
+
+  public void testFindFilesUsingSymbols()
+  {
+    PsiFile psiFile = myFixture.configureByFile( "preprocessor/MyPreprocessorClass.java" );
+    GlobalSearchScope scope = GlobalSearchScope.projectScope( getProject() );
+
+    Set<VirtualFile> files = ManPreprocessorSymbolIndex.findFilesUsingSymbols( Collections.singleton( "CCC" ), scope );
+    assertEquals( Collections.singleton( psiFile.getVirtualFile() ), files );
+
+    files = ManPreprocessorSymbolIndex.findFilesUsingSymbols( Collections.singleton( "ZZZ" ), scope );
+    assertTrue( files.isEmpty() );
+  }
+
+  public void testFindSymbolUsages()
+  {
+    PsiFile psiFile = myFixture.configureByFile( "preprocessor/MyPreprocessorClass.java" );
+    myFixture.addFileToProject( "preprocessor/Other.java",
+      "package preprocessor;\n" +
+      "public class Other {\n" +
+      "  #if BBB\n" +
+      "  #endif\n" +
+      "  String s = \"#if BBB\"; // #if BBB\n" +
+      "}\n" );
+
+    // find usages from the reference in `#if BBB`, as from the editor
+    String text = psiFile.getText();
+    PsiReference ref = psiFile.findReferenceAt( text.indexOf( "BBB", text.indexOf( "#if" ) ) );
+    assertNotNull( ref );
+    PsiElement symbol = ref.resolve();
+    assertTrue( String.valueOf( symbol ), symbol instanceof ManPreprocessorSymbol );
+
+    Collection<UsageInfo> usages = myFixture.findUsages( symbol );
+    // #define BBB, #if BBB, #if BBB, #elif BBB, and #if BBB in Other, but not in the string literal or the comment
+    assertEquals( 5, usages.size() );
+    for( UsageInfo usage: usages )
+    {
+      assertTrue( usage.getElement() instanceof PsiComment );
+      assertEquals( "BBB", usage.getRangeInElement().substring( usage.getElement().getText() ) );
+    }
+  }
+}
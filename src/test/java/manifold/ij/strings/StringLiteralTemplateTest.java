@@ -0,0 +1,54 @@
+package manifold.ij.strings;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.lang.injection.InjectedLanguageManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.util.PsiTreeUtil;
+import java.util.List;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+
+public class StringLiteralTemplateTest extends AbstractManifoldCodeInsightTest
+{
+  public void testManyStringLiterals()
+  {
+    // 50k string literals, a few of them templates
+    StringBuilder text = new StringBuilder( "package strings;\n\npublic class ManyLiterals\n{\n" );
+    for( int i = 0; i < 500; i++ )
+    {
+      if( i % 100 == 1 )
+      {
+        text.append( "  @manifold.rt.api.DisableStringLiteralTemplates\n" );
+      }
+      text.append( "  void literals" ).append( i ).append( "( int x )\n  {\n" );
+      for( int j = 0; j < 100; j++ )
+      {
+        text.append( "    String s" ).append( j ).append( j == 0 ? " = \"x is $x\";\n" : " = \"plain " + j + "\";\n" );
+      }
+      text.append( "  }\n" );
+    }
+    text.append( "}\n" );
+    PsiJavaFile psiFile = (PsiJavaFile)myFixture.configureByText( "ManyLiterals.java", text.toString() );
+
+    List<HighlightInfo> highlightInfos = myFixture.doHighlighting( HighlightSeverity.ERROR );
+    assertEmpty( highlightInfos );
+
+    PsiClass psiClass = psiFile.getClasses()[0];
+    InjectedLanguageManager injectedLanguageManager = InjectedLanguageManager.getInstance( getProject() );
+    for( int i = 0; i < 3; i++ )
+    {
+      PsiMethod method = psiClass.findMethodsByName( "literals" + i, false )[0];
+      List<PsiLiteralExpression> literals = PsiTreeUtil.collectElementsOfType( method, PsiLiteralExpression.class )
+        .stream().toList();
+      PsiLiteralExpression template = literals.stream().filter( l -> l.getText().contains( "$" ) ).findFirst().orElseThrow();
+      // templates are disabled in the annotated method
+      assertEquals( i != 1, injectedLanguageManager.getInjectedPsiFiles( template ) != null );
+
+      PsiLiteralExpression plain = literals.stream().filter( l -> !l.getText().contains( "$" ) ).findFirst().orElseThrow();
+      assertNull( injectedLanguageManager.getInjectedPsiFiles( plain ) );
+    }
+  }
+}
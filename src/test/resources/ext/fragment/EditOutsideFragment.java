@@ -0,0 +1,19 @@
+package ext.fragment;
+
+public class EditOutsideFragment
+{
+  public void useFragment()
+  {
+    /*[MyProps.properties/]
+    foo=bar
+    hi=hello
+    */
+    String bar = MyProps.foo;
+  }
+
+  public void unrelated()
+  {
+    String hi = MyProps.hi;
+    int i = 0;<caret>
+  }
+}